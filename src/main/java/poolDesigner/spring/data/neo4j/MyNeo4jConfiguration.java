@@ -42,7 +42,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @Import(RepositoryRestMvcConfiguration.class)
 @EnableScheduling
 @EnableAutoConfiguration
-@ComponentScan(basePackages = {"poolDesigner.spring.data.neo4j.services"})
+@ComponentScan(basePackages = {"poolDesigner.spring.data.neo4j.services", "poolDesigner.spring.data.neo4j.store"})
 @Configuration
 @EnableNeo4jRepositories(basePackages = "poolDesigner.spring.data.neo4j.repositories")
 public class MyNeo4jConfiguration extends Neo4jConfiguration {
@@ -25,10 +25,18 @@ THE POSSIBILITY OF SUCH DAMAGE.
 
 package poolDesigner.spring.data.neo4j;
 
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.exception.AdmissionRejectedException;
 import poolDesigner.spring.data.neo4j.exception.DesignSpaceNotFoundException;
 import poolDesigner.spring.data.neo4j.services.DesignSpaceService;
+import poolDesigner.spring.data.neo4j.services.ImportJob;
+import poolDesigner.spring.data.neo4j.services.ImportJobService;
+import poolDesigner.spring.data.neo4j.services.ImportReport;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -41,9 +49,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -51,12 +63,22 @@ import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import javax.servlet.http.HttpServletResponse;
+
 /**
  * @author nicholas roehner
  * @since 12.14.15
@@ -70,9 +92,20 @@ public class PoolDesignerApplication extends WebMvcConfigurerAdapter {
         SpringApplication.run(PoolDesignerApplication.class, args);
     }
 
+    /**
+     * Shared by all requests, since a configured ObjectMapper is thread-safe and costly to create. It never 
+     * closes the request and response streams that it reads and writes.
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+    		.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE)
+    		.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    
     @Autowired
     DesignSpaceService designSpaceService;
     
+    @Autowired
+    ImportJobService importJobService;
+    
     @ResponseBody @RequestMapping(value = "/delete/all", method = RequestMethod.POST)
     public ResponseEntity<String> deleteAll() {
     	designSpaceService.deleteAll();
@@ -82,14 +115,27 @@ public class PoolDesignerApplication extends WebMvcConfigurerAdapter {
     }
     
     @ResponseBody @RequestMapping(value = "/design/pool", method = RequestMethod.POST)
-    public ResponseEntity<String> designPools(@RequestBody String poolSpecJSON) {
-    	ObjectMapper mapper = new ObjectMapper();
+    public ResponseEntity<String> designPools(@RequestBody String poolSpecJSON, 
+    		@RequestParam(value = "namespaces", required = false) List<String> namespaces,
+    		@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	Set<String> namespaceSet = namespaces != null ? new HashSet<String>(namespaces) : new HashSet<String>();
+    	
+    	HttpHeaders headers = new HttpHeaders();
+    	
+    	long version = designSpaceService.pinLibraryVersion();
     	
     	try {
-			List<String> poolSpecs = mapper.readValue(poolSpecJSON, new TypeReference<List<String>>(){});
+    		headers.setETag(designSpaceService.getPoolsETag(poolSpecJSON, namespaceSet, "string", version));
+    		headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    		
+    		if (matchesETag(ifNoneMatch, headers.getETag())) {
+    			return new ResponseEntity<String>(headers, HttpStatus.NOT_MODIFIED);
+    		}
+    		
+			List<String> poolSpecs = MAPPER.readValue(poolSpecJSON, new TypeReference<List<String>>(){});
 			
-			return new ResponseEntity<String>(mapper.writeValueAsString(designSpaceService.designPools(poolSpecs)), 
-					HttpStatus.OK);
+			return new ResponseEntity<String>(MAPPER.writeValueAsString(designSpaceService.designPools(poolSpecs, 
+					namespaceSet, version)), headers, HttpStatus.OK);
 		} catch (JsonParseException ex) {
 			return new ResponseEntity<String>(ex.getMessage(), HttpStatus.BAD_REQUEST);
 		} catch (JsonMappingException ex) {
@@ -98,11 +144,220 @@ public class PoolDesignerApplication extends WebMvcConfigurerAdapter {
 			return new ResponseEntity<String>(ex.getMessage(), HttpStatus.BAD_REQUEST);
 		} catch (DesignSpaceNotFoundException ex) {
 			return new ResponseEntity<String>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (AdmissionRejectedException ex) {
+			return renderRejection(ex);
+		} finally {
+			designSpaceService.unpinLibraryVersion(version);
 		}
     }
     
+    /**
+     * Answers pool design requests that accept the compact CBOR form instead of JSON. Other requests, including 
+     * those that accept any media type, are answered by designPools.
+     */
+    @RequestMapping(value = "/design/pool", method = RequestMethod.POST, 
+    		produces = DesignSpaceService.COMPACT_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> designCompactPools(@RequestBody String poolSpecJSON, 
+    		@RequestParam(value = "namespaces", required = false) List<String> namespaces,
+    		@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	return streamPools(poolSpecJSON, namespaces, ifNoneMatch, true);
+    }
+    
+    /**
+     * Designs pools as for designPools, but answers with the structured form, in which each pool is a list of 
+     * positions with their component IDs and roles, streamed as the pools are traversed.
+     */
+    @RequestMapping(value = "/design/pool/structured", method = RequestMethod.POST)
+    public ResponseEntity<StreamingResponseBody> designStructuredPools(@RequestBody String poolSpecJSON, 
+    		@RequestParam(value = "namespaces", required = false) List<String> namespaces,
+    		@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	return streamPools(poolSpecJSON, namespaces, ifNoneMatch, false);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> streamPools(String poolSpecJSON, List<String> namespaces, 
+    		String ifNoneMatch, final boolean isCompact) {
+    	Set<String> namespaceSet = namespaces != null ? new HashSet<String>(namespaces) : new HashSet<String>();
+    	
+    	HttpHeaders headers = new HttpHeaders();
+    	
+    	final List<DesignSpace> poolSpaces;
+    	
+    	long version = designSpaceService.pinLibraryVersion();
+    	
+    	try {
+    		headers.setETag(designSpaceService.getPoolsETag(poolSpecJSON, namespaceSet, 
+    				isCompact ? "compact" : "structured", version));
+    		headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    		
+    		if (matchesETag(ifNoneMatch, headers.getETag())) {
+    			return new ResponseEntity<StreamingResponseBody>(headers, HttpStatus.NOT_MODIFIED);
+    		}
+    		
+    		List<String> poolSpecs = MAPPER.readValue(poolSpecJSON, new TypeReference<List<String>>(){});
+    		
+    		poolSpaces = designSpaceService.designPoolSpaces(poolSpecs, namespaceSet, version);
+    	} catch (IOException ex) {
+    		return streamMessage(ex.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    	} catch (DesignSpaceNotFoundException ex) {
+    		return streamMessage(ex.getMessage(), new HttpHeaders(), HttpStatus.BAD_REQUEST);
+    	} catch (AdmissionRejectedException ex) {
+    		ResponseEntity<String> rejection = renderRejection(ex);
+    		
+    		return streamMessage(ex.getMessage(), rejection.getHeaders(), rejection.getStatusCode());
+    	} finally {
+    		designSpaceService.unpinLibraryVersion(version);
+    	}
+    	
+    	if (isCompact) {
+    		headers.setContentType(MediaType.parseMediaType(DesignSpaceService.COMPACT_MEDIA_TYPE));
+    	} else {
+    		headers.setContentType(MediaType.APPLICATION_JSON);
+    	}
+    	
+    	return new ResponseEntity<StreamingResponseBody>(new StreamingResponseBody() {
+    		@Override
+    		public void writeTo(OutputStream out) throws IOException {
+    			if (isCompact) {
+    				designSpaceService.writeCompactPools(poolSpaces, out);
+    			} else {
+    				designSpaceService.writeStructuredPools(poolSpaces, out);
+    			}
+    		}
+    	}, headers, HttpStatus.OK);
+    }
+    
+    /**
+     * Designs pools for a JSON array of pool specifications of any length. The body is parsed as a stream and 
+     * the results are streamed back as they are designed; see DesignSpaceService.designPoolBatch.
+     */
+    @RequestMapping(value = "/design/pool/batch", method = RequestMethod.POST)
+    public void designPoolBatch(InputStream in, 
+    		@RequestParam(value = "namespaces", required = false) List<String> namespaces,
+    		HttpServletResponse response) throws IOException {
+    	JsonParser specParser = MAPPER.getFactory().createParser(in);
+    	
+    	response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    	
+    	JsonGenerator resultGenerator = MAPPER.getFactory().createGenerator(response.getOutputStream());
+    	
+    	try {
+    		designSpaceService.designPoolBatch(specParser, 
+    				namespaces != null ? new HashSet<String>(namespaces) : new HashSet<String>(), resultGenerator);
+    	} catch (JsonProcessingException ex) {
+    		writeBatchError(response, ex.getMessage(), HttpStatus.BAD_REQUEST);
+    	} catch (AdmissionRejectedException ex) {
+    		response.setHeader("Retry-After", Integer.toString(ex.getRetryAfterSeconds()));
+    		
+    		writeBatchError(response, ex.getMessage(), 
+    				ex.isSaturated() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE);
+    	} finally {
+    		specParser.close();
+    	}
+    }
+    
+    /**
+     * Reports an error that happened before any result was sent. Once results have been sent the status can no 
+     * longer change, so the response is left truncated and the client sees malformed JSON.
+     */
+    private void writeBatchError(HttpServletResponse response, String message, HttpStatus status) 
+    		throws IOException {
+    	if (!response.isCommitted()) {
+    		response.resetBuffer();
+    		response.setStatus(status.value());
+    		response.getOutputStream().write(MAPPER.writeValueAsBytes(Collections.singletonMap("message", message)));
+    	}
+    }
+    
+    @RequestMapping(value = "/d3", method = RequestMethod.GET)
+    public ResponseEntity<StreamingResponseBody> d3GraphDesignSpace(@RequestParam("targetSpaceID") String targetSpaceID,
+    		@RequestParam(value = "offset", defaultValue = "0") int offset,
+    		@RequestParam(value = "limit", defaultValue = "10000") int limit,
+    		@RequestParam(value = "collapse", defaultValue = "false") boolean isCollapsed,
+    		@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	return renderD3Graph(targetSpaceID, offset, limit, isCollapsed, false, ifNoneMatch);
+    }
+    
+    @RequestMapping(value = "/d3", method = RequestMethod.GET, produces = DesignSpaceService.COMPACT_MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> d3CompactGraphDesignSpace(@RequestParam("targetSpaceID") String targetSpaceID,
+    		@RequestParam(value = "offset", defaultValue = "0") int offset,
+    		@RequestParam(value = "limit", defaultValue = "10000") int limit,
+    		@RequestParam(value = "collapse", defaultValue = "false") boolean isCollapsed,
+    		@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    	return renderD3Graph(targetSpaceID, offset, limit, isCollapsed, true, ifNoneMatch);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> renderD3Graph(final String targetSpaceID, final int offset, 
+    		final int limit, final boolean isCollapsed, final boolean isCompact, String ifNoneMatch) {
+    	HttpHeaders headers = new HttpHeaders();
+    	
+    	final List<Map<String, Object>> rows;
+    	
+    	long version = designSpaceService.pinLibraryVersion();
+    	
+    	try {
+    		headers.setETag(designSpaceService.getD3GraphETag(targetSpaceID, offset, limit, isCollapsed, isCompact, 
+    				version));
+    		headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    		
+    		if (matchesETag(ifNoneMatch, headers.getETag())) {
+    			return new ResponseEntity<StreamingResponseBody>(headers, HttpStatus.NOT_MODIFIED);
+    		}
+    		
+    		rows = designSpaceService.getD3GraphRows(targetSpaceID, offset, limit, version);
+    	} finally {
+    		designSpaceService.unpinLibraryVersion(version);
+    	}
+    	
+    	if (isCompact) {
+    		headers.setContentType(MediaType.parseMediaType(DesignSpaceService.COMPACT_MEDIA_TYPE));
+    	} else {
+    		headers.setContentType(MediaType.APPLICATION_JSON);
+    	}
+    	
+    	return new ResponseEntity<StreamingResponseBody>(new StreamingResponseBody() {
+    		@Override
+    		public void writeTo(OutputStream out) throws IOException {
+    			designSpaceService.writeD3Graph(targetSpaceID, rows, offset, limit, isCollapsed, isCompact, out);
+    		}
+    	}, headers, HttpStatus.OK);
+    }
+    
+    @RequestMapping(value = "/spaces", method = RequestMethod.GET)
+    public ResponseEntity<String> listDesignSpaces(
+    		@RequestParam(value = "afterSpaceID", required = false) String afterSpaceID,
+    		@RequestParam(value = "limit", defaultValue = "100") int limit) {
+    	return renderSpaces(designSpaceService.listDesignSpaces(afterSpaceID, limit));
+    }
+    
+    @RequestMapping(value = "/spaces/search", method = RequestMethod.GET)
+    public ResponseEntity<String> searchDesignSpaces(@RequestParam("label") String label,
+    		@RequestParam(value = "afterSpaceID", required = false) String afterSpaceID,
+    		@RequestParam(value = "limit", defaultValue = "100") int limit) {
+    	return renderSpaces(designSpaceService.searchDesignSpaces(label, afterSpaceID, limit));
+    }
+    
+    @RequestMapping(value = "/spaces/summary", method = RequestMethod.GET)
+    public ResponseEntity<String> getDesignSpaceSummary(@RequestParam("targetSpaceID") String targetSpaceID) {
+    	try {
+    		return renderSpaces(designSpaceService.getDesignSpaceSummary(targetSpaceID));
+    	} catch (DesignSpaceNotFoundException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.NOT_FOUND);
+    	}
+    }
+    
+    private ResponseEntity<String> renderSpaces(Map<String, Object> spaces) {
+    	try {
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(spaces), HttpStatus.OK);
+    	} catch (JsonProcessingException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.INTERNAL_SERVER_ERROR);
+    	}
+    }
+    
     @RequestMapping(value = "/import/sbol", method = RequestMethod.POST)
-    public ResponseEntity<String> importSBOL(@RequestParam(value = "inputSBOLFiles[]", required = true) List<MultipartFile> inputSBOLFiles) {
+    public ResponseEntity<String> importSBOL(@RequestParam(value = "inputSBOLFiles[]", required = true) List<MultipartFile> inputSBOLFiles,
+    		@RequestParam(value = "namespace", defaultValue = DesignSpaceService.DEFAULT_NAMESPACE) String namespace) {
     	Set<SBOLDocument> sbolDocs = new HashSet<SBOLDocument>();
     	
     	for (MultipartFile inputSBOLFile : inputSBOLFiles) {
@@ -110,21 +365,209 @@ public class PoolDesignerApplication extends WebMvcConfigurerAdapter {
     			try {
     				sbolDocs.add(SBOLReader.read(inputSBOLFile.getInputStream()));
     			} catch (SBOLValidationException ex) {
-    				return new ResponseEntity<String>("{\"message\": \"" + ex.getMessage() + "\"}", 
+    				return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
     	    				HttpStatus.BAD_REQUEST);
     			} catch (IOException ex) {
-    				return new ResponseEntity<String>("{\"message\": \"" + ex.getMessage() + "\"}", 
+    				return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
     	    				HttpStatus.BAD_REQUEST);
     			} catch (SBOLConversionException ex) {
-    				return new ResponseEntity<String>("{\"message\": \"" + ex.getMessage() + "\"}", 
+    				return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
     	    				HttpStatus.BAD_REQUEST);
     			}
     		}
     	}
     	
-    	designSpaceService.importSBOL(sbolDocs);
+    	try {
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(designSpaceService.importSBOL(sbolDocs, namespace)), 
+    				HttpStatus.OK);
+    	} catch (JsonProcessingException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.INTERNAL_SERVER_ERROR);
+    	} catch (AdmissionRejectedException ex) {
+    		return renderRejection(ex);
+    	}
+    }
+    
+    @RequestMapping(value = "/import/sbol/stream", method = RequestMethod.POST)
+    public ResponseEntity<String> streamSBOL(@RequestParam(value = "inputSBOLFiles[]", required = true) List<MultipartFile> inputSBOLFiles,
+    		@RequestParam(value = "namespace", defaultValue = DesignSpaceService.DEFAULT_NAMESPACE) String namespace) {
+    	List<File> spooledFiles = new ArrayList<File>(inputSBOLFiles.size());
+    	
+    	ImportReport report;
+    	
+    	try {
+    		spoolSBOLFiles(inputSBOLFiles, spooledFiles);
+    		
+    		report = designSpaceService.importSBOLFiles(spooledFiles, namespace);
+    	} catch (SBOLValidationException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.BAD_REQUEST);
+    	} catch (IOException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.BAD_REQUEST);
+    	} catch (SBOLConversionException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.BAD_REQUEST);
+    	} catch (AdmissionRejectedException ex) {
+    		return renderRejection(ex);
+    	} finally {
+    		for (File spooledFile : spooledFiles) {
+    			spooledFile.delete();
+    		}
+    	}
+    	
+    	try {
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(report), HttpStatus.OK);
+    	} catch (JsonProcessingException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.INTERNAL_SERVER_ERROR);
+    	}
+    }
+    
+    @RequestMapping(value = "/import/sbol/jobs", method = RequestMethod.POST)
+    public ResponseEntity<String> submitImportJob(@RequestParam(value = "inputSBOLFiles[]", required = true) List<MultipartFile> inputSBOLFiles,
+    		@RequestParam(value = "namespace", defaultValue = DesignSpaceService.DEFAULT_NAMESPACE) String namespace) {
+    	List<File> spooledFiles = new ArrayList<File>(inputSBOLFiles.size());
+    	
+    	try {
+    		spoolSBOLFiles(inputSBOLFiles, spooledFiles);
+    		
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(importJobService.submitImport(spooledFiles, namespace)), 
+    				HttpStatus.ACCEPTED);
+    	} catch (IOException ex) {
+    		for (File spooledFile : spooledFiles) {
+    			spooledFile.delete();
+    		}
+    		
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.BAD_REQUEST);
+    	} catch (AdmissionRejectedException ex) {
+    		for (File spooledFile : spooledFiles) {
+    			spooledFile.delete();
+    		}
+    		
+    		return renderRejection(ex);
+    	}
+    }
+    
+    @RequestMapping(value = "/import/sbol/jobs/{jobID}", method = RequestMethod.GET)
+    public ResponseEntity<String> getImportJob(@PathVariable("jobID") String jobID) {
+    	return renderImportJob(jobID, importJobService.getJob(jobID), HttpStatus.OK);
+    }
+    
+    @RequestMapping(value = "/import/sbol/jobs/{jobID}", method = RequestMethod.DELETE)
+    public ResponseEntity<String> cancelImportJob(@PathVariable("jobID") String jobID) {
+    	return renderImportJob(jobID, importJobService.cancelJob(jobID), HttpStatus.ACCEPTED);
+    }
+    
+    @RequestMapping(value = "/admission", method = RequestMethod.GET)
+    public ResponseEntity<String> getAdmissionStats() {
+    	Map<String, Object> importJobStats = new LinkedHashMap<String, Object>();
+    	
+    	importJobStats.put("running", importJobService.getRunningJobCount());
+    	importJobStats.put("queued", importJobService.getQueuedJobCount());
+    	importJobStats.put("rejected", importJobService.getRejectedJobCount());
+    	
+    	Map<String, Object> stats = new LinkedHashMap<String, Object>();
+    	
+    	stats.put("gates", designSpaceService.getAdmissionGates());
+    	stats.put("importJobs", importJobStats);
+    	
+    	try {
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(stats), HttpStatus.OK);
+    	} catch (JsonProcessingException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.INTERNAL_SERVER_ERROR);
+    	}
+    }
+    
+    /**
+     * Answers a rejected request with 429 if the wait queue was full, or 503 if the request timed out waiting, 
+     * and tells the client when to retry.
+     */
+    private ResponseEntity<String> renderRejection(AdmissionRejectedException ex) {
+    	HttpHeaders headers = new HttpHeaders();
     	
-    	return new ResponseEntity<String>("{\"message\": \"SBOL was successfully imported.\"}", 
-				HttpStatus.NO_CONTENT);
+    	headers.set("Retry-After", Integer.toString(ex.getRetryAfterSeconds()));
+    	
+    	return new ResponseEntity<String>(renderMessage(ex.getMessage()), headers, 
+    			ex.isSaturated() ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE);
+    }
+    
+    /**
+     * Returns a message as a JSON object with a single message field, escaped by the mapper.
+     */
+    private static String renderMessage(String message) {
+    	try {
+    		return MAPPER.writeValueAsString(Collections.singletonMap("message", message));
+    	} catch (JsonProcessingException ex) {
+    		throw new IllegalStateException(ex);
+    	}
+    }
+    
+    /**
+     * Streams an error message as JSON from a handler that streams its normal response.
+     */
+    private ResponseEntity<StreamingResponseBody> streamMessage(final String message, HttpHeaders headers, 
+    		HttpStatus status) {
+    	HttpHeaders messageHeaders = new HttpHeaders();
+    	
+    	messageHeaders.putAll(headers);
+    	messageHeaders.setContentType(MediaType.APPLICATION_JSON);
+    	
+    	return new ResponseEntity<StreamingResponseBody>(new StreamingResponseBody() {
+    		@Override
+    		public void writeTo(OutputStream out) throws IOException {
+    			out.write(MAPPER.writeValueAsBytes(Collections.singletonMap("message", message)));
+    		}
+    	}, messageHeaders, status);
+    }
+    
+    private ResponseEntity<String> renderImportJob(String jobID, ImportJob job, HttpStatus status) {
+    	if (job == null) {
+    		return new ResponseEntity<String>(renderMessage("Import job " + jobID + " not found."), 
+    				HttpStatus.NOT_FOUND);
+    	}
+    	
+    	try {
+    		return new ResponseEntity<String>(MAPPER.writeValueAsString(job), status);
+    	} catch (JsonProcessingException ex) {
+    		return new ResponseEntity<String>(renderMessage(ex.getMessage()), 
+    				HttpStatus.INTERNAL_SERVER_ERROR);
+    	}
+    }
+    
+    /**
+     * Checks an If-None-Match header against the current ETag. ETags are derived from the library version, so a 
+     * match is answered with 304 before the store is read. Weak comparison is used, as for any If-None-Match.
+     */
+    private static boolean matchesETag(String ifNoneMatch, String eTag) {
+    	if (ifNoneMatch != null) {
+    		for (String candidate : ifNoneMatch.split(",")) {
+    			candidate = candidate.trim();
+    			
+    			if (candidate.startsWith("W/")) {
+    				candidate = candidate.substring(2);
+    			}
+    			
+    			if (candidate.equals("*") || candidate.equals(eTag)) {
+    				return true;
+    			}
+    		}
+    	}
+    	
+    	return false;
+    }
+    
+    private void spoolSBOLFiles(List<MultipartFile> inputSBOLFiles, List<File> spooledFiles) throws IOException {
+    	for (MultipartFile inputSBOLFile : inputSBOLFiles) {
+    		if (!inputSBOLFile.isEmpty()) {
+    			File spooledFile = File.createTempFile(DesignSpaceService.RESERVED_PREFIX, ".xml");
+
+    			spooledFiles.add(spooledFile);
+
+    			inputSBOLFile.transferTo(spooledFile);
+    		}
+    	}
     }
-}
+}
\ No newline at end of file
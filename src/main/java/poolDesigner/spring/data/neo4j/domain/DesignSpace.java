@@ -48,6 +48,8 @@ public class DesignSpace {
     
     int idIndex;
     
+    String contentHash;
+    
 	@Relationship(type = "CONTAINS") 
     Set<Node> nodes;
 
@@ -68,6 +70,10 @@ public class DesignSpace {
     	return spaceID;
     }
     
+    public String getContentHash() {
+    	return contentHash;
+    }
+    
     public Set<String> getComponentIDs() {
     	Set<String> compIDs = new HashSet<String>();
     	
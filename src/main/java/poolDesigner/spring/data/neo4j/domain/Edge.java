@@ -52,6 +52,12 @@ public class Edge {
     ArrayList<String> componentIDs;
     
     ArrayList<String> componentRoles;
+    
+    @Transient
+    Set<String> componentIDSet;
+    
+    @Transient
+    Set<String> componentRoleSet;
 
     public Edge() {
     	
@@ -74,14 +80,20 @@ public class Edge {
     		componentIDs = new ArrayList<String>();
     		
     		componentRoles = new ArrayList<String>();
+    		
+    		componentIDSet = null;
+    		
+    		componentRoleSet = null;
     	}
     	
-    	if (!componentIDs.contains(compID)) {
+    	if (getComponentIDSet().add(compID)) {
     		componentIDs.add(compID);
     	}
     	
+    	Set<String> compRoleSet = getComponentRoleSet();
+    	
     	for (String compRole : compRoles) {
-    		if (!componentRoles.contains(compRole)) {
+    		if (compRoleSet.add(compRole)) {
     			componentRoles.add(compRole);
     		}
     	}
@@ -99,10 +111,18 @@ public class Edge {
     	if (hasComponentIDs()) {
     		boolean result = componentIDs.remove(compID);
     		
+    		if (result && componentIDSet != null && !componentIDs.contains(compID)) {
+    			componentIDSet.remove(compID);
+    		}
+    		
     		if (componentIDs.size() == 0) {
     			componentIDs = null;
     			
     			componentRoles = null;
+    			
+    			componentIDSet = null;
+    			
+    			componentRoleSet = null;
     		}
     		
     		return result;
@@ -131,9 +151,60 @@ public class Edge {
     	return componentRoles;
     }
     
+    /**
+     * Replaces the component IDs. The object-graph mapper also sets them through this method when it loads the 
+     * edge, so that the index over the previous IDs is dropped.
+     */
+    public void setComponentIDs(ArrayList<String> componentIDs) {
+    	this.componentIDs = componentIDs;
+    	
+    	componentIDSet = null;
+    }
+    
+    public void setComponentRoles(ArrayList<String> componentRoles) {
+    	this.componentRoles = componentRoles;
+    	
+    	componentRoleSet = null;
+    }
+    
+    /**
+     * Returns a hash index over componentIDs so that membership tests on edges with very large label sets,
+     * such as those of role spaces, do not scan the list. The index is built on first use and kept in step by 
+     * every method that changes the list; one that replaces the list drops the index instead.
+     */
+    private Set<String> getComponentIDSet() {
+    	if (componentIDSet == null) {
+    		componentIDSet = new HashSet<String>(componentIDs);
+    	}
+    	
+    	return componentIDSet;
+    }
+    
+    private Set<String> getComponentRoleSet() {
+    	if (componentRoleSet == null) {
+    		componentRoleSet = new HashSet<String>(componentRoles);
+    	}
+    	
+    	return componentRoleSet;
+    }
+    
+    private static boolean isIntersecting(Set<String> set1, Set<String> set2) {
+    	if (set1.size() > set2.size()) {
+    		return isIntersecting(set2, set1);
+    	}
+    	
+    	for (String element : set1) {
+    		if (set2.contains(element)) {
+    			return true;
+    		}
+    	}
+    	
+    	return false;
+    }
+    
     public boolean hasComponentID(String compID) {
     	if (hasComponentIDs()) {
-    		return componentIDs.contains(compID);
+    		return getComponentIDSet().contains(compID);
     	} else {
     		return false;
     	}
@@ -149,7 +220,7 @@ public class Edge {
     
     public boolean hasComponentRole(String compRole) {
     	if (hasComponentRoles()) {
-    		return componentRoles.contains(compRole);
+    		return getComponentRoleSet().contains(compRole);
     	} else {
     		return false;
     	}
@@ -169,16 +240,22 @@ public class Edge {
     
     public void intersectWithEdge(Edge edge) {
     	if (hasComponentIDs() && edge.hasComponentIDs()) {
-    		componentIDs.retainAll(edge.getComponentIDs());
+    		componentIDs.retainAll(edge.getComponentIDSet());
+    		
+    		componentIDSet = null;
     	}
     	
     	if (hasComponentRoles() && edge.hasComponentRoles()) {
-    		componentRoles.retainAll(edge.getComponentRoles());
+    		componentRoles.retainAll(edge.getComponentRoleSet());
+    		
+    		componentRoleSet = null;
     	}
     	
     	if (componentIDs != null && componentIDs.size() == 0) {
     		componentIDs = null;
     		componentRoles = null;
+    		componentIDSet = null;
+    		componentRoleSet = null;
     	}
     }
     
@@ -207,13 +284,8 @@ public class Edge {
     public boolean hasSameComponents(Edge edge) {
     	if (hasComponentIDs() && edge.hasComponentIDs() && 
     			hasComponentRoles() && edge.hasComponentRoles()) {
-        	Set<String> compIDs1 = new HashSet<String>(componentIDs);
-    		Set<String> compIDs2 = new HashSet<String>(edge.getComponentIDs());
-    		
-    		Set<String> compRoles1 = new HashSet<String>(componentRoles);
-    		Set<String> compRoles2 = new HashSet<String>(edge.getComponentRoles());
-    		
-    		return compIDs1.equals(compIDs2) && compRoles1.equals(compRoles2);
+    		return getComponentIDSet().equals(edge.getComponentIDSet()) 
+    				&& getComponentRoleSet().equals(edge.getComponentRoleSet());
     	} else if (!hasComponentIDs() && !edge.hasComponentIDs() && !hasComponentRoles() 
     			&& !edge.hasComponentRoles()) {
     		return true;
@@ -225,16 +297,8 @@ public class Edge {
     public boolean hasSharedComponents(Edge edge) {
     	if (hasComponentIDs() && edge.hasComponentIDs() && 
     			hasComponentRoles() && edge.hasComponentRoles()) {
-    		Set<String> compIDs1 = new HashSet<String>(componentIDs);
-    		Set<String> compIDs2 = new HashSet<String>(edge.getComponentIDs());
-    		
-    		Set<String> compRoles1 = new HashSet<String>(componentRoles);
-    		Set<String> compRoles2 = new HashSet<String>(edge.getComponentRoles());
-    		
-    		compIDs1.retainAll(compIDs2);
-    		compRoles1.retainAll(compRoles2);
-    		
-    		return compIDs1.size() > 0 && compRoles1.size() > 0;
+    		return isIntersecting(getComponentIDSet(), edge.getComponentIDSet()) 
+    				&& isIntersecting(getComponentRoleSet(), edge.getComponentRoleSet());
     	} else if (!hasComponentIDs() && !edge.hasComponentIDs() 
     			&& !hasComponentRoles() && !edge.hasComponentRoles()) {
     		return true;
@@ -245,12 +309,7 @@ public class Edge {
     
     public boolean hasSharedRoles(Edge edge) {
     	if (hasComponentRoles() && edge.hasComponentRoles()) {
-    		Set<String> compRoles1 = new HashSet<String>(componentRoles);
-    		Set<String> compRoles2 = new HashSet<String>(edge.getComponentRoles());
-    		
-    		compRoles1.retainAll(compRoles2);
-    		
-    		return compRoles1.size() > 0;
+    		return isIntersecting(getComponentRoleSet(), edge.getComponentRoleSet());
     	} else if (!hasComponentRoles() && !edge.hasComponentRoles()) {
     		return true;
     	} else {
@@ -281,6 +340,8 @@ public class Edge {
 			}
 			
 			this.componentIDs = reverseComponentIDs;
+			
+			componentIDSet = null;
 		}
     }
     
@@ -293,30 +354,22 @@ public class Edge {
     }
     
     public void unionWithEdge(Edge edge) {
-    	Set<String> mergedCompIDs = new HashSet<String>();
-    	
-    	Set<String> mergedCompRoles = new HashSet<String>();
-    	
     	if (hasComponentIDs() && edge.hasComponentIDs()) {
-    		mergedCompIDs.addAll(componentIDs);
+    		Set<String> mergedCompIDs = getComponentIDSet();
     		
     		for (String compID : edge.getComponentIDs()) {
-        		if (!mergedCompIDs.contains(compID)) {
+        		if (mergedCompIDs.add(compID)) {
         			componentIDs.add(compID);
-        			
-        			mergedCompIDs.add(compID);
         		}
         	}
     	}
     	
     	if (hasComponentRoles() && edge.hasComponentRoles()) {
-    		mergedCompRoles.addAll(componentRoles);
+    		Set<String> mergedCompRoles = getComponentRoleSet();
     		
     		for (String compRole : edge.getComponentRoles()) {
-        		if (!mergedCompRoles.contains(compRole)) {
+        		if (mergedCompRoles.add(compRole)) {
         			componentRoles.add(compRole);
-        			
-        			mergedCompRoles.add(compRole);
         		}
         	}
     	}
@@ -0,0 +1,62 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.exception;
+
+public class AdmissionRejectedException extends RuntimeException {
+
+	private static final long serialVersionUID = 5840619317201855903L;
+	String gateName;
+	boolean isSaturated;
+	int retryAfterSeconds;
+	
+	public AdmissionRejectedException(String gateName, boolean isSaturated, int retryAfterSeconds) {
+		this.gateName = gateName;
+		this.isSaturated = isSaturated;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+	
+	/**
+	 * Returns true if the request was turned away because the wait queue was full, and false if it waited but 
+	 * was not admitted in time.
+	 */
+	public boolean isSaturated() {
+		return isSaturated;
+	}
+	
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+	
+	public String getMessage() {
+		if (isSaturated) {
+			return "Too many " + gateName + " requests are queued. Retry after " + retryAfterSeconds + " seconds.";
+		} else {
+			return "Timed out waiting to admit " + gateName + " request. Retry after " + retryAfterSeconds 
+					+ " seconds.";
+		}
+	}
+	
+}
@@ -41,9 +41,11 @@ import java.util.Set;
  * @author nicholas roehner
  * @since 12.14.15
  */
-@RepositoryRestResource(collectionResourceRel = "poolDesigner", path = "poolDesigner")
+@RepositoryRestResource(exported = false)
 public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
-	@Query("CREATE (output:DesignSpace {spaceID: {outputSpaceID}, idIndex: size({allCompIDs}) + 1}) "
+	@Query("CREATE (output:DesignSpace {spaceID: {outputSpaceID}, idIndex: size({allCompIDs}) + 1, "
+			+ "nodeCount: size({allCompIDs}) + 1, isComposite: size({allCompIDs}) > 1, "
+			+ "componentIDs: {compIDs}, componentRoles: {compRoles}}) "
 			+ "WITH output "
 			+ "UNWIND range(0, size({allCompIDs})) AS i "
 			+ "CREATE (output)-[:CONTAINS]->(n:Node {nodeID: 'n' + i}) "
@@ -55,7 +57,128 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
 			+ "SET nAccept.nodeType = 'accept'")
 	void createDesignSpace(@Param("outputSpaceID") String outputSpaceID, 
 			@Param("allCompIDs") ArrayList<ArrayList<String>> allCompIDs, 
-			@Param("allCompRoles") ArrayList<ArrayList<String>> allCompRoles);
+			@Param("allCompRoles") ArrayList<ArrayList<String>> allCompRoles,
+			@Param("compIDs") ArrayList<String> compIDs, @Param("compRoles") ArrayList<String> compRoles);
+	
+	@Query("UNWIND range(0, size({outputSpaceIDs}) - 1) AS s "
+			+ "CREATE (output:DesignSpace {spaceID: {outputSpaceIDs}[s], idIndex: size({allCompIDs}[s]) + 1, "
+			+ "nodeCount: size({allCompIDs}[s]) + 1, isComposite: size({allCompIDs}[s]) > 1, "
+			+ "componentIDs: {compIDSets}[s], componentRoles: {compRoleSets}[s], contentHash: {contentHashes}[s], "
+			+ "namespace: {namespace}}) "
+			+ "WITH s, output "
+			+ "UNWIND range(0, size({allCompIDs}[s])) AS i "
+			+ "CREATE (output)-[:CONTAINS]->(n:Node {nodeID: 'n' + i}) "
+			+ "WITH s, COLLECT(n) AS ns "
+			+ "UNWIND range(0, size(ns) - 2) AS i "
+			+ "WITH ns[0] as nStart, ns[size(ns) - 1] as nAccept, ns[i] AS n1, ns[i + 1] AS n2, "
+			+ "{allCompIDs}[s][i] AS compIDs, {allCompRoles}[s][i] AS compRoles "
+			+ "CREATE (n1)-[:PRECEDES {componentIDs: compIDs, componentRoles: compRoles}]->(n2) "
+			+ "SET nStart.nodeType = 'start' "
+			+ "SET nAccept.nodeType = 'accept'")
+	void createDesignSpaces(@Param("outputSpaceIDs") ArrayList<String> outputSpaceIDs, 
+			@Param("allCompIDs") ArrayList<ArrayList<ArrayList<String>>> allCompIDs, 
+			@Param("allCompRoles") ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			@Param("compIDSets") ArrayList<ArrayList<String>> compIDSets, 
+			@Param("compRoleSets") ArrayList<ArrayList<String>> compRoleSets,
+			@Param("contentHashes") ArrayList<String> contentHashes, @Param("namespace") String namespace);
+	
+	@Query("CREATE (output:StagedSpace {spaceID: {outputSpaceID}, stage: {stage}, idIndex: size({allCompIDs}) + 1, "
+			+ "nodeCount: size({allCompIDs}) + 1, isComposite: size({allCompIDs}) > 1, "
+			+ "componentIDs: {compIDs}, componentRoles: {compRoles}}) "
+			+ "WITH output "
+			+ "UNWIND range(0, size({allCompIDs})) AS i "
+			+ "CREATE (output)-[:CONTAINS]->(n:Node {nodeID: 'n' + i}) "
+			+ "WITH COLLECT(n) AS ns "
+			+ "UNWIND range(0, size(ns) - 2) AS i "
+			+ "WITH ns[0] as nStart, ns[size(ns) - 1] as nAccept, ns[i] AS n1, ns[i + 1] AS n2, {allCompIDs}[i] AS compIDs, {allCompRoles}[i] AS compRoles "
+			+ "CREATE (n1)-[:PRECEDES {componentIDs: compIDs, componentRoles: compRoles}]->(n2) "
+			+ "SET nStart.nodeType = 'start' "
+			+ "SET nAccept.nodeType = 'accept'")
+	void stageDesignSpace(@Param("stage") long stage, @Param("outputSpaceID") String outputSpaceID, 
+			@Param("allCompIDs") ArrayList<ArrayList<String>> allCompIDs, 
+			@Param("allCompRoles") ArrayList<ArrayList<String>> allCompRoles,
+			@Param("compIDs") ArrayList<String> compIDs, @Param("compRoles") ArrayList<String> compRoles);
+	
+	@Query("UNWIND range(0, size({outputSpaceIDs}) - 1) AS s "
+			+ "CREATE (output:StagedSpace {spaceID: {outputSpaceIDs}[s], stage: {stage}, idIndex: size({allCompIDs}[s]) + 1, "
+			+ "nodeCount: size({allCompIDs}[s]) + 1, isComposite: size({allCompIDs}[s]) > 1, "
+			+ "componentIDs: {compIDSets}[s], componentRoles: {compRoleSets}[s], contentHash: {contentHashes}[s], "
+			+ "namespace: {namespace}}) "
+			+ "WITH s, output "
+			+ "UNWIND range(0, size({allCompIDs}[s])) AS i "
+			+ "CREATE (output)-[:CONTAINS]->(n:Node {nodeID: 'n' + i}) "
+			+ "WITH s, COLLECT(n) AS ns "
+			+ "UNWIND range(0, size(ns) - 2) AS i "
+			+ "WITH ns[0] as nStart, ns[size(ns) - 1] as nAccept, ns[i] AS n1, ns[i + 1] AS n2, "
+			+ "{allCompIDs}[s][i] AS compIDs, {allCompRoles}[s][i] AS compRoles "
+			+ "CREATE (n1)-[:PRECEDES {componentIDs: compIDs, componentRoles: compRoles}]->(n2) "
+			+ "SET nStart.nodeType = 'start' "
+			+ "SET nAccept.nodeType = 'accept'")
+	void stageDesignSpaces(@Param("stage") long stage, @Param("outputSpaceIDs") ArrayList<String> outputSpaceIDs, 
+			@Param("allCompIDs") ArrayList<ArrayList<ArrayList<String>>> allCompIDs, 
+			@Param("allCompRoles") ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			@Param("compIDSets") ArrayList<ArrayList<String>> compIDSets, 
+			@Param("compRoleSets") ArrayList<ArrayList<String>> compRoleSets,
+			@Param("contentHashes") ArrayList<String> contentHashes, @Param("namespace") String namespace);
+	
+	@Query("CREATE (:StagedSpace {spaceID: {targetSpaceID}, stage: {stage}, isDeletion: true})")
+	void stageDeletion(@Param("stage") long stage, @Param("targetSpaceID") String targetSpaceID);
+	
+	@Query("MATCH (s:StagedSpace) "
+			+ "WHERE s.spaceID IN {targetSpaceIDs} AND s.stage = {stage} "
+			+ "SET s:DeletedSpace "
+			+ "REMOVE s:StagedSpace "
+			+ "RETURN count(s)")
+	Long unstageDesignSpaces(@Param("stage") long stage, @Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs);
+	
+	@Query("MATCH (s:StagedSpace {stage: {stage}}) "
+			+ "WITH s LIMIT {batchSize} "
+			+ "SET s:DeletedSpace "
+			+ "REMOVE s:StagedSpace "
+			+ "RETURN count(s)")
+	Long discardStagedSpaces(@Param("stage") long stage, @Param("batchSize") int batchSize);
+	
+	@Query("MATCH (s:StagedSpace) "
+			+ "WITH s LIMIT {batchSize} "
+			+ "SET s:DeletedSpace "
+			+ "REMOVE s:StagedSpace "
+			+ "RETURN count(s)")
+	Long discardStagedSpaces(@Param("batchSize") int batchSize);
+	
+	@Query("MERGE (l:Library {name: 'library'}) "
+			+ "ON CREATE SET l.version = 0, l.stageCount = 0 "
+			+ "SET l.stageCount = l.stageCount + 1 "
+			+ "RETURN l.stageCount")
+	Long createLibraryStage();
+	
+	@Query("MATCH (l:Library {name: 'library'}) "
+			+ "RETURN l.version")
+	Long getLibraryVersion();
+	
+	@Query("MERGE (l:Library {name: 'library'}) "
+			+ "ON CREATE SET l.version = 0, l.stageCount = 0 "
+			+ "SET l.version = l.version + 1 "
+			+ "RETURN l.version")
+	Long incrementLibraryVersion();
+	
+	@Query("MATCH (s:StagedSpace {stage: {stage}}) "
+			+ "MATCH (d:DesignSpace {spaceID: s.spaceID}) "
+			+ "SET d:DeletedSpace, d.retiredVersion = {version} "
+			+ "REMOVE d:DesignSpace "
+			+ "RETURN count(d)")
+	Long retireStagedDesignSpaces(@Param("stage") long stage, @Param("version") long version);
+	
+	@Query("MATCH (s:StagedSpace {stage: {stage}}) "
+			+ "WHERE s.isDeletion = true "
+			+ "DELETE s "
+			+ "RETURN count(s)")
+	Long deleteStagedDeletions(@Param("stage") long stage);
+	
+	@Query("MATCH (s:StagedSpace {stage: {stage}}) "
+			+ "SET s:DesignSpace, s.version = {version} "
+			+ "REMOVE s:StagedSpace, s.stage "
+			+ "RETURN count(s)")
+	Long publishStagedDesignSpaces(@Param("stage") long stage, @Param("version") long version);
 	
 	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
 			+ "OPTIONAL MATCH (target)-[:CONTAINS]->(n:Node) "
@@ -65,6 +188,68 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
 	
 	@Query("MATCH (n) DETACH DELETE n")
 	void deleteAll();
+	
+	@Query("MATCH (target:DesignSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} "
+			+ "SET target:DeletedSpace "
+			+ "REMOVE target:DesignSpace "
+			+ "RETURN count(target)")
+	Long markDesignSpacesDeleted(@Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs);
+	
+	@Query("MATCH (target:DesignSpace) "
+			+ "WITH target LIMIT {batchSize} "
+			+ "SET target:DeletedSpace, target.retiredVersion = {retiredVersion} "
+			+ "REMOVE target:DesignSpace "
+			+ "RETURN count(target)")
+	Long markDesignSpacesDeleted(@Param("retiredVersion") long retiredVersion, @Param("batchSize") int batchSize);
+	
+	@Query("MATCH (d:DeletedSpace)-[:CONTAINS]->(n:Node) "
+			+ "WHERE coalesce(d.retiredVersion, 0) <= {oldestVersion} "
+			+ "WITH n LIMIT {batchSize} "
+			+ "DETACH DELETE n "
+			+ "RETURN count(n)")
+	Long deleteNodesOfDeletedSpaces(@Param("oldestVersion") long oldestVersion, @Param("batchSize") int batchSize);
+	
+	@Query("MATCH (d:DeletedSpace) "
+			+ "WHERE coalesce(d.retiredVersion, 0) <= {oldestVersion} "
+			+ "WITH d LIMIT {batchSize} "
+			+ "DETACH DELETE d "
+			+ "RETURN count(d)")
+	Long deleteDeletedSpaces(@Param("oldestVersion") long oldestVersion, @Param("batchSize") int batchSize);
+	
+	@Query("MATCH (n) "
+			+ "WHERE NOT n:Library AND NOT n:DeletedSpace AND NOT (n)<-[:CONTAINS]-(:DeletedSpace) "
+			+ "WITH n LIMIT {batchSize} "
+			+ "DETACH DELETE n "
+			+ "RETURN count(n)")
+	Long deleteBatch(@Param("batchSize") int batchSize);
+	
+	@Query("CREATE CONSTRAINT ON (d:DesignSpace) ASSERT d.spaceID IS UNIQUE")
+	void createSpaceIDConstraint();
+	
+	@Query("CREATE CONSTRAINT ON (p:PartEntry) ASSERT p.componentID IS UNIQUE")
+	void createPartEntryConstraint();
+	
+	@Query("CREATE INDEX ON :Node(nodeID)")
+	void createNodeIDIndex();
+	
+	@Query("CREATE INDEX ON :DesignSpace(isComposite)")
+	void createCompositeIndex();
+	
+	@Query("CREATE INDEX ON :DesignSpace(namespace)")
+	void createNamespaceIndex();
+	
+	@Query("CREATE INDEX ON :DeletedSpace(spaceID)")
+	void createDeletedSpaceIDIndex();
+	
+	@Query("CREATE INDEX ON :StagedSpace(spaceID)")
+	void createStagedSpaceIDIndex();
+	
+	@Query("CREATE INDEX ON :StagedSpace(stage)")
+	void createStageIndex();
+	
+	@Query("CREATE CONSTRAINT ON (l:Library) ASSERT l.name IS UNIQUE")
+	void createLibraryConstraint();
 
 	@Query("MATCH (:DesignSpace {spaceID: {targetSpaceID}})-[:CONTAINS]->(n:Node) "
 			+ "REMOVE n.copyIndex")
@@ -76,6 +261,31 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
 			+ "RETURN ID(target) as graphID")
 	Set<Integer> getGraphID(@Param("targetSpaceID") String targetSpaceID);
 	
+	@Query("MATCH (target:DesignSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} "
+			+ "OPTIONAL MATCH (target)-[:CONTAINS]->(m:Node) "
+			+ "OPTIONAL MATCH (m)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
+			+ "RETURN target.spaceID as spaceID, target.idIndex as idIndex, m.nodeID as tailID, m.nodeType as tailType, "
+			+ "e.componentIDs as componentIDs, e.componentRoles as componentRoles, n.nodeID as headID, n.nodeType as headType")
+	List<Map<String, Object>> loadDesignSpaceRows(@Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs);
+	
+	@Query("MATCH (target:DesignSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} AND coalesce(target.version, 0) <= {version} "
+			+ "OPTIONAL MATCH (target)-[:CONTAINS]->(m:Node) "
+			+ "OPTIONAL MATCH (m)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
+			+ "RETURN target.spaceID as spaceID, target.idIndex as idIndex, m.nodeID as tailID, m.nodeType as tailType, "
+			+ "e.componentIDs as componentIDs, e.componentRoles as componentRoles, n.nodeID as headID, n.nodeType as headType "
+			+ "UNION ALL "
+			+ "MATCH (target:DeletedSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} AND coalesce(target.version, 0) <= {version} "
+			+ "AND target.retiredVersion > {version} "
+			+ "OPTIONAL MATCH (target)-[:CONTAINS]->(m:Node) "
+			+ "OPTIONAL MATCH (m)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
+			+ "RETURN target.spaceID as spaceID, target.idIndex as idIndex, m.nodeID as tailID, m.nodeType as tailType, "
+			+ "e.componentIDs as componentIDs, e.componentRoles as componentRoles, n.nodeID as headID, n.nodeType as headType")
+	List<Map<String, Object>> loadDesignSpaceRows(@Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs, 
+			@Param("version") long version);
+	
 	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:CONTAINS]->(n:Node) "
 			+ "RETURN n.nodeID")
 	Set<String> getNodeIDs(@Param("targetSpaceID") String targetSpaceID);
@@ -88,33 +298,182 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
 			+ "RETURN d.spaceID")
 	Set<String> getDesignSpaceIDs();
 	
-	@Query("MATCH (d:DesignSpace)-[:CONTAINS]->(n:Node) "
-			+ "WITH d, count(n) AS dSize "
-			+ "WHERE dSize > 2  "
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.isComposite = true "
 			+ "RETURN d.spaceID")
 	Set<String> getCompositeDesignSpaceIDs();
 	
-	@Query("MATCH (target:DesignSpace)-[:CONTAINS]->(n:Node)-[e:PRECEDES]->(m:Node)<-[:CONTAINS]-(target:DesignSpace) "
-			+ "WHERE target.spaceID = {targetSpaceID} AND has(e.componentIDs) "
-			+ "WITH COLLECT(e) AS es "
-			+ "WITH reduce(output = [], e IN es | output + e.componentIDs) AS compIDs "
-			+ "UNWIND compIDs AS compID "
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.isComposite = true AND d.spaceID > {afterSpaceID} "
+			+ "RETURN d.spaceID "
+			+ "ORDER BY d.spaceID "
+			+ "LIMIT {limit}")
+	List<String> getCompositeDesignSpaceIDs(@Param("afterSpaceID") String afterSpaceID, @Param("limit") int limit);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.spaceID > {afterSpaceID} "
+			+ "RETURN d.spaceID AS spaceID, d.namespace AS namespace, coalesce(d.isComposite, false) AS isComposite, "
+			+ "d.nodeCount AS nodeCount, size(coalesce(d.componentIDs, [])) AS componentCount, "
+			+ "size(coalesce(d.componentRoles, [])) AS componentRoleCount "
+			+ "ORDER BY d.spaceID "
+			+ "LIMIT {limit}")
+	List<Map<String, Object>> listDesignSpaces(@Param("afterSpaceID") String afterSpaceID, @Param("limit") int limit);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.spaceID > {afterSpaceID} AND ({label} IN d.componentIDs OR {label} IN d.componentRoles) "
+			+ "RETURN d.spaceID AS spaceID, d.namespace AS namespace, coalesce(d.isComposite, false) AS isComposite, "
+			+ "d.nodeCount AS nodeCount, size(coalesce(d.componentIDs, [])) AS componentCount, "
+			+ "size(coalesce(d.componentRoles, [])) AS componentRoleCount "
+			+ "ORDER BY d.spaceID "
+			+ "LIMIT {limit}")
+	List<Map<String, Object>> searchDesignSpaces(@Param("label") String label, 
+			@Param("afterSpaceID") String afterSpaceID, @Param("limit") int limit);
+	
+	@Query("MATCH (d:DesignSpace {spaceID: {targetSpaceID}}) "
+			+ "OPTIONAL MATCH (d)-[:CONTAINS]->(:Node)-[e:PRECEDES]->() "
+			+ "WITH d, count(e) AS edgeCount "
+			+ "RETURN d.spaceID AS spaceID, d.namespace AS namespace, coalesce(d.isComposite, false) AS isComposite, "
+			+ "d.nodeCount AS nodeCount, size(coalesce(d.componentIDs, [])) AS componentCount, "
+			+ "size(coalesce(d.componentRoles, [])) AS componentRoleCount, "
+			+ "d.contentHash AS contentHash, edgeCount")
+	List<Map<String, Object>> getDesignSpaceSummary(@Param("targetSpaceID") String targetSpaceID);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE NOT has(d.nodeCount) "
+			+ "WITH d LIMIT {batchSize} "
+			+ "OPTIONAL MATCH (d)-[:CONTAINS]->(n:Node) "
+			+ "WITH d, count(n) AS dSize "
+			+ "SET d.nodeCount = dSize, d.isComposite = dSize > 2 "
+			+ "RETURN count(d)")
+	Long setMissingNodeCounts(@Param("batchSize") int batchSize);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.isComposite = true AND coalesce(d.version, 0) <= {version} "
+			+ "AND any(compID IN d.componentIDs WHERE compID IN {compIDs}) "
+			+ "RETURN d.spaceID AS spaceID "
+			+ "UNION "
+			+ "MATCH (d:DeletedSpace) "
+			+ "WHERE d.retiredVersion > {version} AND d.isComposite = true AND coalesce(d.version, 0) <= {version} "
+			+ "AND any(compID IN d.componentIDs WHERE compID IN {compIDs}) "
+			+ "RETURN d.spaceID AS spaceID")
+	Set<String> getCompositeDesignSpaceIDs(@Param("compIDs") ArrayList<String> compIDs, 
+			@Param("version") long version);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.namespace IN {namespaces} "
+			+ "AND d.isComposite = true AND coalesce(d.version, 0) <= {version} "
+			+ "AND any(compID IN d.componentIDs WHERE compID IN {compIDs}) "
+			+ "RETURN d.spaceID AS spaceID "
+			+ "UNION "
+			+ "MATCH (d:DeletedSpace) "
+			+ "WHERE d.retiredVersion > {version} AND d.namespace IN {namespaces} "
+			+ "AND d.isComposite = true AND coalesce(d.version, 0) <= {version} "
+			+ "AND any(compID IN d.componentIDs WHERE compID IN {compIDs}) "
+			+ "RETURN d.spaceID AS spaceID")
+	Set<String> getCompositeDesignSpaceIDs(@Param("compIDs") ArrayList<String> compIDs, 
+			@Param("namespaces") ArrayList<String> namespaces, @Param("version") long version);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE d.isComposite = true AND NOT has(d.namespace) "
+			+ "WITH d LIMIT {batchSize} "
+			+ "SET d.namespace = {namespace} "
+			+ "RETURN count(d)")
+	Long setMissingNamespaces(@Param("namespace") String namespace, @Param("batchSize") int batchSize);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE NOT has(d.componentIDs) "
+			+ "WITH d LIMIT {batchSize} "
+			+ "OPTIONAL MATCH (d)-[:CONTAINS]->(:Node)-[e:PRECEDES]->(:Node) "
+			+ "WITH d, collect(e) AS es "
+			+ "WITH d, reduce(ids = [], e IN es | ids + coalesce(e.componentIDs, [])) AS compIDs, "
+			+ "reduce(roles = [], e IN es | roles + coalesce(e.componentRoles, [])) AS compRoles "
+			+ "UNWIND CASE WHEN size(compIDs) = 0 THEN [null] ELSE compIDs END AS compID "
+			+ "WITH d, compRoles, collect(DISTINCT compID) AS distinctIDs "
+			+ "UNWIND CASE WHEN size(compRoles) = 0 THEN [null] ELSE compRoles END AS compRole "
+			+ "WITH d, distinctIDs, collect(DISTINCT compRole) AS distinctRoles "
+			+ "SET d.componentIDs = distinctIDs, d.componentRoles = distinctRoles "
+			+ "RETURN count(d)")
+	Long setMissingComponents(@Param("batchSize") int batchSize);
+	
+	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
+			+ "UNWIND target.componentIDs AS compID "
 			+ "RETURN compID")
 	Set<String> getComponentIDs(@Param("targetSpaceID") String targetSpaceID);
 	
-	@Query("MATCH (target:DesignSpace)-[:CONTAINS]->(n:Node)-[e:PRECEDES]->(m:Node)<-[:CONTAINS]-(target:DesignSpace) "
-			+ "WHERE target.spaceID = {targetSpaceID} AND has(e.componentRoles) "
-			+ "WITH COLLECT(e) AS es "
-			+ "WITH reduce(output = [], e IN es | output + e.componentRoles) AS compRoles "
-			+ "UNWIND compRoles AS compRole "
+	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
+			+ "UNWIND target.componentRoles AS compRole "
 			+ "RETURN compRole")
 	Set<String> getComponentRoles(@Param("targetSpaceID") String targetSpaceID);
 	
-	@Query("MATCH (target:DesignSpace)-[:CONTAINS]->(m:Node)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target:DesignSpace) "
-			+ "WHERE target.spaceID = {targetSpaceID} "
+	@Query("MATCH (target:DesignSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} "
+			+ "RETURN target.spaceID as spaceID, target.componentIDs as componentIDs, "
+			+ "target.componentRoles as componentRoles")
+	List<Map<String, Object>> getComponents(@Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs);
+	
+	@Query("MATCH (target:DesignSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} AND coalesce(target.version, 0) <= {version} "
+			+ "RETURN target.spaceID as spaceID, target.componentIDs as componentIDs, "
+			+ "target.componentRoles as componentRoles "
+			+ "UNION ALL "
+			+ "MATCH (target:DeletedSpace) "
+			+ "WHERE target.spaceID IN {targetSpaceIDs} AND coalesce(target.version, 0) <= {version} "
+			+ "AND target.retiredVersion > {version} "
+			+ "RETURN target.spaceID as spaceID, target.componentIDs as componentIDs, "
+			+ "target.componentRoles as componentRoles")
+	List<Map<String, Object>> getComponents(@Param("targetSpaceIDs") ArrayList<String> targetSpaceIDs, 
+			@Param("version") long version);
+	
+	@Query("MATCH (d:DesignSpace) "
+			+ "WHERE has(d.contentHash) "
+			+ "RETURN d.spaceID as spaceID, d.contentHash as contentHash")
+	List<Map<String, Object>> getContentHashes();
+	
+	@Query("MATCH (p:PartEntry) "
+			+ "RETURN p.componentID as componentID, p.contentHash as contentHash, p.spaceIDs as spaceIDs")
+	List<Map<String, Object>> getPartEntries();
+	
+	@Query("UNWIND range(0, size({compIDs}) - 1) AS i "
+			+ "MERGE (p:PartEntry {componentID: {compIDs}[i]}) "
+			+ "SET p.contentHash = {partHashes}[i], p.spaceIDs = {allPartSpaceIDs}[i]")
+	void savePartEntries(@Param("compIDs") ArrayList<String> compIDs, @Param("partHashes") ArrayList<String> partHashes,
+			@Param("allPartSpaceIDs") ArrayList<ArrayList<String>> allPartSpaceIDs);
+	
+	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:CONTAINS]->(:Node {nodeType: 'start'})-[e:PRECEDES]->(:Node) "
+			+ "SET e.componentIDs = {compIDs}, e.componentRoles = {compRoles} "
+			+ "WITH DISTINCT target "
+			+ "SET target.componentIDs = {compIDs}, target.componentRoles = {compRoles}")
+	void setStartComponents(@Param("targetSpaceID") String targetSpaceID, @Param("compIDs") ArrayList<String> compIDs,
+			@Param("compRoles") ArrayList<String> compRoles);
+	
+	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:CONTAINS]->(m:Node)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
 			+ "RETURN target.spaceID as spaceID, m.nodeID as tailID, m.nodeType as tailType, e.componentRoles as componentRoles, "
 			+ "n.nodeID as headID, n.nodeType as headType")
 	List<Map<String, Object>> mapDesignSpace(@Param("targetSpaceID") String targetSpaceID);
+	
+	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}})-[:CONTAINS]->(m:Node)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
+			+ "RETURN target.spaceID as spaceID, m.nodeID as tailID, m.nodeType as tailType, e.componentRoles as componentRoles, "
+			+ "n.nodeID as headID, n.nodeType as headType "
+			+ "ORDER BY ID(e) "
+			+ "SKIP {offset} "
+			+ "LIMIT {limit}")
+	List<Map<String, Object>> mapDesignSpace(@Param("targetSpaceID") String targetSpaceID, @Param("offset") int offset, 
+			@Param("limit") int limit);
+	
+	@Query("OPTIONAL MATCH (live:DesignSpace {spaceID: {targetSpaceID}}) "
+			+ "WHERE coalesce(live.version, 0) <= {version} "
+			+ "OPTIONAL MATCH (retired:DeletedSpace {spaceID: {targetSpaceID}}) "
+			+ "WHERE coalesce(retired.version, 0) <= {version} AND retired.retiredVersion > {version} "
+			+ "WITH coalesce(live, retired) AS target "
+			+ "WHERE target IS NOT NULL "
+			+ "MATCH (target)-[:CONTAINS]->(m:Node)-[e:PRECEDES]->(n:Node)<-[:CONTAINS]-(target) "
+			+ "RETURN target.spaceID as spaceID, m.nodeID as tailID, m.nodeType as tailType, e.componentRoles as componentRoles, "
+			+ "n.nodeID as headID, n.nodeType as headType "
+			+ "ORDER BY ID(e) "
+			+ "SKIP {offset} "
+			+ "LIMIT {limit}")
+	List<Map<String, Object>> mapDesignSpace(@Param("targetSpaceID") String targetSpaceID, @Param("offset") int offset, 
+			@Param("limit") int limit, @Param("version") long version);
 
 	@Query("MATCH (target:DesignSpace {spaceID: {targetSpaceID}}) "
 			+ "SET target.spaceID = {outputSpaceID}")
@@ -128,8 +487,14 @@ public interface DesignSpaceRepository extends GraphRepository<DesignSpace> {
 	@Query("MATCH (input:DesignSpace {spaceID: {inputSpaceID}})-[:CONTAINS]->(n:Node) "
 			+ "WITH input, collect(n) as nodes "
 			+ "MERGE (output:DesignSpace {spaceID: {outputSpaceID}}) "
-			+ "ON CREATE SET output.idIndex = size(nodes) "
-			+ "ON MATCH SET output.idIndex = output.idIndex + size(nodes) "
+			+ "ON CREATE SET output.idIndex = size(nodes), output.nodeCount = size(nodes) "
+			+ "ON MATCH SET output.idIndex = output.idIndex + size(nodes), "
+			+ "output.nodeCount = coalesce(output.nodeCount, 0) + size(nodes) "
+			+ "SET output.isComposite = output.nodeCount > 2 "
+			+ "SET output.componentIDs = reduce(ids = coalesce(output.componentIDs, []), compID IN coalesce(input.componentIDs, []) | "
+			+ "CASE WHEN compID IN ids THEN ids ELSE ids + compID END) "
+			+ "SET output.componentRoles = reduce(roles = coalesce(output.componentRoles, []), compRole IN coalesce(input.componentRoles, []) | "
+			+ "CASE WHEN compRole IN roles THEN roles ELSE roles + compRole END) "
 			+ "WITH input, nodes, output "
 			+ "UNWIND range(0, size(nodes) - 1) as nodeIndex "
 			+ "WITH input, nodeIndex, nodes[nodeIndex] as n, output "
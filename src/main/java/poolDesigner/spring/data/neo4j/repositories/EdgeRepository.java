@@ -34,7 +34,7 @@ import org.springframework.data.rest.core.annotation.RepositoryRestResource;
  * @author nicholas roehner
  * @since 12.14.15
  */
-@RepositoryRestResource(collectionResourceRel = "poolDesigner", path = "poolDesigner")
+@RepositoryRestResource(exported = false)
 public interface EdgeRepository extends GraphRepository<Edge> {
 	
 }
@@ -0,0 +1,137 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import poolDesigner.spring.data.neo4j.exception.AdmissionRejectedException;
+
+/**
+ * Limits how many heavy requests of one kind run at once. Requests beyond the limit wait in a bounded queue, in 
+ * arrival order, for up to a maximum wait. A request that finds the queue full, or that is not admitted in 
+ * time, is rejected with an AdmissionRejectedException instead of adding to the load.
+ */
+public class AdmissionGate {
+	
+	private final String name;
+	
+	private final int maxConcurrent;
+	
+	private final int maxQueued;
+	
+	private final long maxWaitMillis;
+	
+	private final int retryAfterSeconds;
+	
+	private final Semaphore permits;
+	
+	/**
+	 * Counts the requests inside acquire. Those beyond the free permits are waiting.
+	 */
+	private final AtomicInteger queued = new AtomicInteger();
+	
+	private final AtomicLong rejected = new AtomicLong();
+	
+	private final AtomicLong timedOut = new AtomicLong();
+	
+	public AdmissionGate(String name, int maxConcurrent, int maxQueued, long maxWaitMillis, int retryAfterSeconds) {
+		this.name = name;
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+		this.maxQueued = Math.max(0, maxQueued);
+		this.maxWaitMillis = Math.max(0, maxWaitMillis);
+		this.retryAfterSeconds = Math.max(1, retryAfterSeconds);
+		
+		permits = new Semaphore(this.maxConcurrent, true);
+	}
+	
+	/**
+	 * Admits the calling request, waiting in the queue if the limit has been reached. Every admitted request 
+	 * must call release when it is done.
+	 */
+	public void acquire() {
+		if (queued.incrementAndGet() > maxQueued + permits.availablePermits()) {
+			queued.decrementAndGet();
+			
+			rejected.incrementAndGet();
+			
+			throw new AdmissionRejectedException(name, true, retryAfterSeconds);
+		}
+		
+		boolean isAdmitted = false;
+		
+		try {
+			isAdmitted = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		} finally {
+			queued.decrementAndGet();
+		}
+		
+		if (!isAdmitted) {
+			timedOut.incrementAndGet();
+			
+			throw new AdmissionRejectedException(name, false, retryAfterSeconds);
+		}
+	}
+	
+	public void release() {
+		permits.release();
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+	
+	public int getMaxQueued() {
+		return maxQueued;
+	}
+	
+	public int getRunning() {
+		return maxConcurrent - permits.availablePermits();
+	}
+	
+	/**
+	 * Returns the number of requests waiting to be admitted.
+	 */
+	public int getQueued() {
+		return permits.getQueueLength();
+	}
+	
+	public long getRejected() {
+		return rejected.get();
+	}
+	
+	public long getTimedOut() {
+		return timedOut.get();
+	}
+}
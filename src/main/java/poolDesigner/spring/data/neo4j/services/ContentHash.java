@@ -0,0 +1,92 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+/**
+ * Computes SHA-256 content hashes of flattened constructs and part entries so that re-imports can tell which
+ * entries have changed. Nested collections are delimited so that different groupings of the same labels
+ * produce different hashes.
+ */
+public final class ContentHash {
+	
+	private static final char ELEMENT_DELIMITER = '\u001f';
+	
+	private static final char GROUP_START = '\u001d';
+	
+	private static final char GROUP_END = '\u001e';
+	
+	private ContentHash() {
+		
+	}
+	
+	public static String of(Object... contents) {
+		StringBuilder builder = new StringBuilder();
+		
+		for (Object content : contents) {
+			append(content, builder);
+		}
+		
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			
+			byte[] hash = digest.digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+			
+			StringBuilder hexHash = new StringBuilder(2*hash.length);
+			
+			for (byte b : hash) {
+				hexHash.append(Character.forDigit((b >> 4) & 0xf, 16));
+				hexHash.append(Character.forDigit(b & 0xf, 16));
+			}
+			
+			return hexHash.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	private static void append(Object content, StringBuilder builder) {
+		if (content instanceof Collection) {
+			builder.append(GROUP_START);
+			
+			for (Object element : (Collection<?>) content) {
+				append(element, builder);
+			}
+			
+			builder.append(GROUP_END);
+		} else {
+			if (content != null) {
+				builder.append(content.toString());
+			}
+			
+			builder.append(ELEMENT_DELIMITER);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Writes a page of the edge rows of a design space, as returned by DesignSpaceStore.mapDesignSpace, as a D3 
+ * graph of nodes and of links that refer to nodes by index. Nodes are indexed through a map from node ID in the 
+ * order they are first met, so a page is written in time linear in its rows, and the JSON is generated straight 
+ * from the rows without building a tree of maps first. Each page is a self-contained graph of the nodes its links
+ * refer to, and nextOffset is the offset of the next page, or null after the last one.
+ * 
+ * Collapsing merges the parallel edges of a page between the same two nodes into a single link that carries the
+ * union of their component roles and the number of edges merged, which keeps merged pools and role spaces with 
+ * many alternative parts drawable.
+ * 
+ * The compact form has the same structure but is encoded as CBOR, and its component roles are written through 
+ * a StringTable, so each distinct role is sent once per page.
+ */
+class D3GraphWriter {
+	private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	
+	private static final JsonFactory CBOR_FACTORY = new CBORFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	
+	private final Map<String, Integer> nodeIDToIndex = new HashMap<String, Integer>();
+	
+	private final JsonGenerator generator;
+	
+	private final StringTable labelTable;
+	
+	D3GraphWriter(OutputStream out) throws IOException {
+		this(out, false);
+	}
+	
+	D3GraphWriter(OutputStream out, boolean isCompact) throws IOException {
+		if (isCompact) {
+			generator = CBOR_FACTORY.createGenerator(out);
+			
+			labelTable = new StringTable();
+		} else {
+			generator = JSON_FACTORY.createGenerator(out);
+			
+			labelTable = null;
+		}
+	}
+	
+	/**
+	 * Writes the first limit rows as a page starting at offset. A row beyond limit marks that there is a next page.
+	 */
+	void write(String spaceID, List<Map<String, Object>> rows, int offset, int limit, boolean isCollapsed) 
+			throws IOException {
+		int numRows = Math.min(rows.size(), limit);
+		
+		generator.writeStartObject();
+		
+		generator.writeStringField("spaceID", spaceID);
+		
+		generator.writeArrayFieldStart("nodes");
+		
+		for (int i = 0; i < numRows; i++) {
+			Map<String, Object> row = rows.get(i);
+			
+			writeNode((String) row.get("tailID"), (String) row.get("tailType"));
+			
+			writeNode((String) row.get("headID"), (String) row.get("headType"));
+		}
+		
+		generator.writeEndArray();
+		
+		generator.writeArrayFieldStart("links");
+		
+		if (isCollapsed) {
+			writeCollapsedLinks(rows.subList(0, numRows));
+		} else {
+			for (int i = 0; i < numRows; i++) {
+				Map<String, Object> row = rows.get(i);
+				
+				generator.writeStartObject();
+				
+				generator.writeNumberField("source", nodeIDToIndex.get(row.get("tailID")));
+				generator.writeNumberField("target", nodeIDToIndex.get(row.get("headID")));
+				
+				if (row.get("componentRoles") instanceof Collection) {
+					writeLabels("componentRoles", (Collection<?>) row.get("componentRoles"));
+				}
+				
+				generator.writeEndObject();
+			}
+		}
+		
+		generator.writeEndArray();
+		
+		generator.writeNumberField("offset", offset);
+		
+		if (rows.size() > limit) {
+			generator.writeNumberField("nextOffset", offset + limit);
+		} else {
+			generator.writeNullField("nextOffset");
+		}
+		
+		generator.writeEndObject();
+		
+		generator.close();
+	}
+	
+	private void writeNode(String nodeID, String nodeType) throws IOException {
+		if (!nodeIDToIndex.containsKey(nodeID)) {
+			nodeIDToIndex.put(nodeID, nodeIDToIndex.size());
+			
+			generator.writeStartObject();
+			
+			generator.writeStringField("nodeID", nodeID);
+			generator.writeStringField("nodeType", nodeType);
+			
+			generator.writeEndObject();
+		}
+	}
+	
+	private void writeCollapsedLinks(List<Map<String, Object>> rows) throws IOException {
+		Map<Long, Set<String>> linkToRoles = new LinkedHashMap<Long, Set<String>>();
+		
+		Map<Long, Integer> linkToCount = new HashMap<Long, Integer>();
+		
+		for (Map<String, Object> row : rows) {
+			long link = ((long) nodeIDToIndex.get(row.get("tailID")) << 32) | nodeIDToIndex.get(row.get("headID"));
+			
+			Set<String> roles = linkToRoles.get(link);
+			
+			if (roles == null) {
+				roles = new LinkedHashSet<String>();
+				
+				linkToRoles.put(link, roles);
+				
+				linkToCount.put(link, 1);
+			} else {
+				linkToCount.put(link, linkToCount.get(link) + 1);
+			}
+			
+			if (row.get("componentRoles") instanceof Collection) {
+				for (Object role : (Collection<?>) row.get("componentRoles")) {
+					roles.add((String) role);
+				}
+			}
+		}
+		
+		for (Map.Entry<Long, Set<String>> entry : linkToRoles.entrySet()) {
+			generator.writeStartObject();
+			
+			generator.writeNumberField("source", (int) (entry.getKey() >>> 32));
+			generator.writeNumberField("target", (int) (entry.getKey() & 0xFFFFFFFFL));
+			
+			writeLabels("componentRoles", entry.getValue());
+			
+			generator.writeNumberField("edgeCount", linkToCount.get(entry.getKey()));
+			
+			generator.writeEndObject();
+		}
+	}
+	
+	private void writeLabels(String fieldName, Collection<?> labels) throws IOException {
+		generator.writeArrayFieldStart(fieldName);
+		
+		for (Object label : labels) {
+			if (labelTable != null) {
+				labelTable.write(generator, (String) label);
+			} else {
+				generator.writeString((String) label);
+			}
+		}
+		
+		generator.writeEndArray();
+	}
+}
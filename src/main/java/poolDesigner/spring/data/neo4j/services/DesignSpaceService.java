@@ -32,42 +32,98 @@ import poolDesigner.spring.data.neo4j.exception.DesignSpaceBranchesConflictExcep
 import poolDesigner.spring.data.neo4j.exception.DesignSpaceConflictException;
 import poolDesigner.spring.data.neo4j.exception.DesignSpaceNotFoundException;
 import poolDesigner.spring.data.neo4j.exception.ParameterEmptyException;
-import poolDesigner.spring.data.neo4j.repositories.DesignSpaceRepository;
-import poolDesigner.spring.data.neo4j.repositories.EdgeRepository;
-import poolDesigner.spring.data.neo4j.repositories.NodeRepository;
+import poolDesigner.spring.data.neo4j.store.DesignSpaceStore;
 
-import org.sbolstandard.core2.Cut;
-import org.sbolstandard.core2.OrientationType;
-import org.sbolstandard.core2.SequenceOntology;
-import org.sbolstandard.core2.Component;
-import org.sbolstandard.core2.ComponentDefinition;
-import org.sbolstandard.core2.Location;
-import org.sbolstandard.core2.Range;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import org.sbolstandard.core2.SBOLConversionException;
 import org.sbolstandard.core2.SBOLDocument;
-import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.SBOLReader;
+import org.sbolstandard.core2.SBOLValidationException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.net.URI;
+import javax.annotation.PostConstruct;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 @Service
-@Transactional
 public class DesignSpaceService {
 
-    @Autowired DesignSpaceRepository designSpaceRepository;
-    @Autowired EdgeRepository edgeRepository;
-    @Autowired NodeRepository nodeRepository;
+    @Autowired DesignSpaceStore designSpaceStore;
+    @Autowired SequenceOntologyCache soCache;
+    
+    @Value("${poolDesigner.import.readWorkers:1}")
+    int importReadWorkers;
+    
+    @Value("${poolDesigner.import.flattenWorkers:2}")
+    int importFlattenWorkers;
+    
+    @Value("${poolDesigner.import.resolveWorkers:1}")
+    int importResolveWorkers;
+    
+    @Value("${poolDesigner.import.persistWorkers:1}")
+    int importPersistWorkers;
+    
+    @Value("${poolDesigner.import.queueCapacity:256}")
+    int importQueueCapacity;
+    
+    @Value("${poolDesigner.import.batchSize:100}")
+    int importBatchSize;
+    
+    @Value("${poolDesigner.design.batchSize:100}")
+    int designBatchSize;
+    
+    @Value("${poolDesigner.admission.design.maxConcurrent:2}")
+    int designMaxConcurrent;
+    
+    /**
+     * A queued design holds only a parked request thread, while the CPU and heap spent on designs are bounded 
+     * by maxConcurrent. The queue is therefore sized to absorb a burst of a few dozen clients, but kept well 
+     * below the 200 worker threads of the embedded container, so that designs are still rejected before they 
+     * can starve every other request of a thread.
+     */
+    @Value("${poolDesigner.admission.design.maxQueued:64}")
+    int designMaxQueued;
+    
+    @Value("${poolDesigner.admission.import.maxConcurrent:1}")
+    int importMaxConcurrent;
+    
+    @Value("${poolDesigner.admission.import.maxQueued:2}")
+    int importMaxQueued;
+    
+    @Value("${poolDesigner.admission.maxWaitMillis:30000}")
+    long admissionMaxWaitMillis;
+    
+    @Value("${poolDesigner.admission.retryAfterSeconds:10}")
+    int admissionRetryAfterSeconds;
+    
+    AdmissionGate designGate;
+    
+    AdmissionGate importGate;
     
     private static final String POOL_PATTERN = "\\[(?:r\\^)?(?:\\w|\\s)+(?:,(?:r\\^)?(?:\\w|\\s)+)*\\]";
 	
@@ -77,34 +133,144 @@ public class DesignSpaceService {
     
     public static final String REVERSE_PREFIX = "r^";
     
+    public static final String DEFAULT_NAMESPACE = "default";
+    
+    public static final int MAX_D3_PAGE_SIZE = 50000;
+    
+    public static final String COMPACT_MEDIA_TYPE = "application/cbor";
+    
+    public static final int MAX_SPACE_PAGE_SIZE = 1000;
+    
+    private final String libraryEpoch = Long.toString(System.currentTimeMillis(), 36);
+    
+    private final ReentrantLock importLock = new ReentrantLock();
+    
+    @PostConstruct
+    public void createAdmissionGates() {
+    	designGate = new AdmissionGate("pool design", designMaxConcurrent, designMaxQueued, 
+    			admissionMaxWaitMillis, admissionRetryAfterSeconds);
+    	
+    	importGate = new AdmissionGate("SBOL import", importMaxConcurrent, importMaxQueued, 
+    			admissionMaxWaitMillis, admissionRetryAfterSeconds);
+    }
+    
+    public List<AdmissionGate> getAdmissionGates() {
+    	List<AdmissionGate> gates = new ArrayList<AdmissionGate>(2);
+    	
+    	gates.add(designGate);
+    	
+    	gates.add(importGate);
+    	
+    	return gates;
+    }
+    
     public List<String> designPools(List<String> poolSpecs) throws DesignSpaceNotFoundException {
-    	List<String> specIDs = new ArrayList<String>(poolSpecs.size());
+    	return designPools(poolSpecs, new HashSet<String>());
+    }
+    
+    /**
+     * Designs pools that match the constructs of the given library namespaces, or of every namespace if none 
+     * are given. Parts are resolved against the whole library. Every read is made against the library version 
+     * that was current when the design started, so an import published in the meantime is not seen. Designs 
+     * are admitted through the design gate, since each may load much of the library into memory.
+     */
+    public List<String> designPools(List<String> poolSpecs, Set<String> namespaces) 
+    		throws DesignSpaceNotFoundException {
+    	return convertDesignSpacesToPools(designPoolSpaces(poolSpecs, namespaces));
+    }
+    
+    /**
+     * Designs pools as for designPools, but against a library version that the caller has pinned, so that a 
+     * response and its ETag can be derived from the same version.
+     */
+    public List<String> designPools(List<String> poolSpecs, Set<String> namespaces, long version) 
+    		throws DesignSpaceNotFoundException {
+    	return convertDesignSpacesToPools(designPoolSpaces(poolSpecs, namespaces, version));
+    }
+    
+    private List<String> convertDesignSpacesToPools(List<DesignSpace> poolSpaces) {
+    	List<String> pools = new ArrayList<String>(poolSpaces.size());
+    	
+    	for (DesignSpace poolSpace : poolSpaces) {
+    		pools.add(convertDesignSpaceToPool(poolSpace));
+    	}
+    	
+    	return pools;
+    }
+    
+    /**
+     * Designs pools as for designPools, but returns the merged pool spaces, one for each specification, so that 
+     * they can be written in another form. A specification that matches no construct gets an empty pool space.
+     */
+    public List<DesignSpace> designPoolSpaces(List<String> poolSpecs, Set<String> namespaces) 
+    		throws DesignSpaceNotFoundException {
+    	long version = designSpaceStore.pinLibraryVersion();
+    	
+    	try {
+    		return designPoolSpaces(poolSpecs, namespaces, version);
+    	} finally {
+    		designSpaceStore.unpinLibraryVersion(version);
+    	}
+    }
+    
+    /**
+     * Designs pool spaces as for designPoolSpaces, but against a library version that the caller has pinned.
+     */
+    public List<DesignSpace> designPoolSpaces(List<String> poolSpecs, Set<String> namespaces, long version) 
+    		throws DesignSpaceNotFoundException {
+    	designGate.acquire();
+    	
+    	try {
+    		return buildPoolSpaces(poolSpecs, namespaces, version);
+    	} finally {
+    		designGate.release();
+    	}
+    }
+    
+    /**
+     * Pins the current library version, so that reads made with it see that version until it is unpinned.
+     */
+    public long pinLibraryVersion() {
+    	return designSpaceStore.pinLibraryVersion();
+    }
+    
+    public void unpinLibraryVersion(long version) {
+    	designSpaceStore.unpinLibraryVersion(version);
+    }
+    
+    /**
+     * Builds the specification and match spaces of a design in memory only, under IDs scoped to the design, so 
+     * concurrent designs share nothing but the pinned library and leave nothing behind in the store, even when 
+     * they fail. Spaces under the reserved prefix are never matched as constructs.
+     */
+    private List<DesignSpace> buildPoolSpaces(List<String> poolSpecs, Set<String> namespaces, long version) 
+    		throws DesignSpaceNotFoundException {
+    	String scopeID = RESERVED_PREFIX + UUID.randomUUID().toString().replace("-", "");
+    	
+    	List<DesignSpace> specSpaces = new ArrayList<DesignSpace>(poolSpecs.size());
+    	
+    	Set<String> specCompIDs = new HashSet<String>();
     	
     	for (int i = 0; i < poolSpecs.size(); i++) {
-    		String specID = RESERVED_PREFIX + "S" + i;
-    		
-    		convertPoolToDesignSpace(poolSpecs.get(i), specID);
-    		
-    		specIDs.add(specID);
+    		specSpaces.add(convertPoolToDesignSpace(poolSpecs.get(i), scopeID + "S" + i, specCompIDs, version));
     	}
     	
-    	Set<String> constructIDs = getCompositeDesignSpaceIDs();
+    	List<String> constructIDs = new ArrayList<String>();
     	
-    	constructIDs.removeAll(specIDs);
+    	for (String constructID : getCompositeDesignSpaceIDs(specCompIDs, namespaces, version)) {
+    		if (!constructID.startsWith(RESERVED_PREFIX)) {
+    			constructIDs.add(constructID);
+    		}
+    	}
     	
     	List<List<DesignSpace>> allMatchSpaces;
     	
-    	if (specIDs.size() > 0) {
-    		allMatchSpaces = matchDesignSpaces(specIDs, new ArrayList<String>(constructIDs), 
-    				RESERVED_PREFIX + "M");
+    	if (specSpaces.size() > 0) {
+    		allMatchSpaces = matchDesignSpaces(specSpaces, constructIDs, scopeID + "M", version);
     	} else {
     		allMatchSpaces = new ArrayList<List<DesignSpace>>(0);
     	}
     	
-    	for (String specID : specIDs) {
-    		deleteDesignSpace(specID);
-    	}
-    	
     	List<DesignSpace> mergedSpaces = new ArrayList<DesignSpace>(allMatchSpaces.size());
 
     	for (List<DesignSpace> matchSpaces : allMatchSpaces) {
@@ -120,122 +286,361 @@ public class DesignSpaceService {
         		}
     		}
     		
-    		mergeDesignSpaces(false, false, 2, 0, completeMatches);
+    		if (completeMatches.isEmpty()) {
+    			mergedSpaces.add(new DesignSpace(scopeID + "M"));
+    		} else {
+    			mergeDesignSpaces(false, false, 2, 0, completeMatches);
+    			
+    			mergedSpaces.add(completeMatches.get(0));
+    		}
+    	}
+    	
+    	return mergedSpaces;
+    }
+    
+    /**
+     * Designs pools for a JSON array of pool specifications read incrementally from the parser, and writes a JSON
+     * array with one result for each specification, in order. Specifications are designed as they are parsed, 
+     * batchSize at a time, and the results of each batch are flushed before the next is read, so neither the 
+     * specifications nor the results of a large batch are held in memory at once. The whole batch is admitted 
+     * once and designed against one pinned library version.
+     * 
+     * Each result is an object with either the pool or, if the specification could not be designed, a message. A
+     * batch in which any specification fails, for example by naming an unknown part, is designed again one 
+     * specification at a time, so that only the faulty specifications fail and the array stays well formed.
+     */
+    public void designPoolBatch(JsonParser specParser, Set<String> namespaces, JsonGenerator resultGenerator) 
+    		throws IOException {
+    	designGate.acquire();
+    	
+    	try {
+    		if (specParser.nextToken() != JsonToken.START_ARRAY) {
+    			throw new JsonParseException("Expected an array of pool specifications.", 
+    					specParser.getCurrentLocation());
+    		}
+    		
+    		long version = designSpaceStore.pinLibraryVersion();
     		
-    		mergedSpaces.add(completeMatches.get(0));
+    		try {
+    			resultGenerator.writeStartArray();
+    			
+    			List<String> poolSpecs = new ArrayList<String>(designBatchSize);
+    			
+    			JsonToken token;
+    			
+    			while ((token = specParser.nextToken()) != JsonToken.END_ARRAY) {
+    				if (token == null) {
+    					throw new JsonParseException("Unexpected end of pool specifications.", 
+    							specParser.getCurrentLocation());
+    				}
+    				
+    				if (token == JsonToken.VALUE_STRING) {
+    					poolSpecs.add(specParser.getText());
+    				} else {
+    					specParser.skipChildren();
+    					
+    					poolSpecs.add(null);
+    				}
+    				
+    				if (poolSpecs.size() >= designBatchSize) {
+    					writePoolBatch(poolSpecs, namespaces, version, resultGenerator);
+    					
+    					poolSpecs.clear();
+    				}
+    			}
+    			
+    			writePoolBatch(poolSpecs, namespaces, version, resultGenerator);
+    			
+    			resultGenerator.writeEndArray();
+    			
+    			resultGenerator.flush();
+    		} finally {
+    			designSpaceStore.unpinLibraryVersion(version);
+    		}
+    	} finally {
+    		designGate.release();
+    	}
+    }
+    
+    private void writePoolBatch(List<String> poolSpecs, Set<String> namespaces, long version, 
+    		JsonGenerator generator) throws IOException {
+    	if (poolSpecs.isEmpty()) {
+    		return;
     	}
     	
-    	List<String> pools = new ArrayList<String>(mergedSpaces.size());
+    	if (poolSpecs.contains(null) && poolSpecs.size() > 1) {
+    		writePoolsSingly(poolSpecs, namespaces, version, generator);
+    	} else if (poolSpecs.get(0) == null) {
+    		writePoolMessage("Pool specification must be a string.", generator);
+    	} else {
+    		List<DesignSpace> poolSpaces;
+    		
+    		try {
+    			poolSpaces = buildPoolSpaces(poolSpecs, namespaces, version);
+    		} catch (RuntimeException ex) {
+    			if (poolSpecs.size() > 1) {
+    				writePoolsSingly(poolSpecs, namespaces, version, generator);
+    			} else if (ex.getMessage() != null) {
+    				writePoolMessage(ex.getMessage(), generator);
+    			} else {
+    				writePoolMessage("Pool specification could not be designed.", generator);
+    			}
+    			
+    			return;
+    		}
+    		
+    		for (DesignSpace poolSpace : poolSpaces) {
+    			generator.writeStartObject();
+    			
+    			generator.writeStringField("pool", convertDesignSpaceToPool(poolSpace));
+    			
+    			generator.writeEndObject();
+    		}
+    	}
     	
-    	for (DesignSpace mergedSpace : mergedSpaces) {
-    		pools.add(convertDesignSpaceToPool(mergedSpace));
+    	generator.flush();
+    }
+    
+    private void writePoolsSingly(List<String> poolSpecs, Set<String> namespaces, long version, 
+    		JsonGenerator generator) throws IOException {
+    	for (String poolSpec : poolSpecs) {
+    		writePoolBatch(Collections.singletonList(poolSpec), namespaces, version, generator);
     	}
+    }
+    
+    private void writePoolMessage(String message, JsonGenerator generator) throws IOException {
+    	generator.writeStartObject();
     	
-    	return pools;
+    	generator.writeStringField("message", message);
+    	
+    	generator.writeEndObject();
+    }
+    
+    /**
+     * Writes pool spaces in the compact CBOR form, in which each component ID is sent once; see PoolWriter.
+     */
+    public void writeCompactPools(List<DesignSpace> poolSpaces, OutputStream out) throws IOException {
+    	new PoolWriter(out, true).write(poolSpaces);
+    }
+    
+    /**
+     * Writes pool spaces as JSON in the structured form, in which each pool is a list of positions with their 
+     * component IDs and roles; see PoolWriter.
+     */
+    public void writeStructuredPools(List<DesignSpace> poolSpaces, OutputStream out) throws IOException {
+    	new PoolWriter(out, false).write(poolSpaces);
     }
     
+    /**
+     * Clears the library once no import is running, so that the stage of an import is never deleted with it.
+     */
     public void deleteAll() {
-    	designSpaceRepository.deleteAll();
+    	importLock.lock();
+    	
+    	try {
+    		designSpaceStore.deleteAll();
+    	} finally {
+    		importLock.unlock();
+    	}
+    }
+    
+    /**
+     * Returns a tag that changes whenever a library version is published or the library is cleared. The tag 
+     * also changes on restart, since versions are not guaranteed to survive one. It is read without querying the 
+     * store.
+     */
+    public String getLibraryTag() {
+    	return getLibraryTag(designSpaceStore.getLibraryVersion());
     }
     
-    public Map<String, Object> d3GraphDesignSpace(String targetSpaceID) {
-        return mapDesignSpaceToD3Format(designSpaceRepository.mapDesignSpace(targetSpaceID));
+    private String getLibraryTag(long version) {
+    	return libraryEpoch + "." + version;
     }
     
-    public void importSBOL(Set<SBOLDocument> sbolDocs) {
-    	SequenceOntology so = new SequenceOntology();
+    /**
+     * Returns a strong ETag for a page of the D3 graph of the target space under the given library version, 
+     * which the caller pins until it has read the page.
+     */
+    public String getD3GraphETag(String targetSpaceID, int offset, int limit, boolean isCollapsed, 
+    		boolean isCompact, long version) {
+    	return "\"" + ContentHash.of(getLibraryTag(version), "d3", targetSpaceID, Math.max(0, offset), 
+    			getD3PageSize(limit), isCollapsed, isCompact) + "\"";
+    }
+    
+    /**
+     * Returns a strong ETag for the pools designed from the given specification under the given library 
+     * version, which the caller pins until it has designed the pools. Each form of the pools, such as "string", 
+     * "structured" or "compact", has its own tag.
+     */
+    public String getPoolsETag(String poolSpecJSON, Set<String> namespaces, String poolForm, long version) {
+    	return "\"" + ContentHash.of(getLibraryTag(version), "pool", poolForm, poolSpecJSON, 
+    			new TreeSet<String>(namespaces)) + "\"";
+    }
+    
+    public void writeD3Graph(String targetSpaceID, int offset, int limit, boolean isCollapsed, OutputStream out) 
+    		throws IOException {
+    	writeD3Graph(targetSpaceID, offset, limit, isCollapsed, false, out);
+    }
+    
+    /**
+     * Writes up to limit edges of the target space, starting at offset, as a D3 graph of the current library 
+     * version. The limit is capped at MAX_D3_PAGE_SIZE, and collapsing merges parallel edges into one link; see 
+     * D3GraphWriter. The compact form is encoded as CBOR.
+     */
+    public void writeD3Graph(String targetSpaceID, int offset, int limit, boolean isCollapsed, boolean isCompact, 
+    		OutputStream out) throws IOException {
+    	List<Map<String, Object>> rows;
     	
-    	Set<String> spaceIDs = getDesignSpaceIDs();
+    	long version = designSpaceStore.pinLibraryVersion();
     	
-    	for (SBOLDocument sbolDoc : sbolDocs) {
-    		int i = 1;
-    		
-    		Set<ComponentDefinition> dnaCompDefs = getDNAComponentDefinitions(sbolDoc);
-    		
-    		System.out.println("importing " + dnaCompDefs.size());
-    		
-        	for (ComponentDefinition compDef : dnaCompDefs) {
-        		String compID = compDef.getPersistentIdentity().toString();
-        		
-        		if (compDef.getComponents().size() > 0) {;
-        			if (!spaceIDs.contains(compID)) {
-        				convertComponentDefinitionToDesignSpace(compDef, so);
-        				
-        				spaceIDs.add(compID);
-        			}
-        		} else {
-        			ArrayList<String> compRoles = convertSOTermsToNames(compDef.getRoles(), so);
-        			
-        			if (compDef.getDisplayId() != null) {
-            			createPartSpace(compDef.getDisplayId(), compID, compRoles, spaceIDs);
-            			
-            			spaceIDs.add(compDef.getDisplayId());
-            		}
-
-            		if (compDef.getName() != null) {
-            			createPartSpace(compDef.getName(), compID, compRoles, spaceIDs);
-            			
-            			spaceIDs.add(compDef.getName());
-            		}
-            		
-            		for (String compRole : compRoles) {
-            			createPartSpace(compRole, compID, compRoles, spaceIDs);
-            			
-            			spaceIDs.add(compRole);
-            		}
-        		}
-        		
-        		System.out.println(i);
-				
-				i++;
-        	}
+    	try {
+    		rows = getD3GraphRows(targetSpaceID, offset, limit, version);
+    	} finally {
+    		designSpaceStore.unpinLibraryVersion(version);
     	}
+    	
+    	writeD3Graph(targetSpaceID, rows, offset, limit, isCollapsed, isCompact, out);
     }
     
-    private void deleteDesignSpace(String targetSpaceID) {
-    	designSpaceRepository.deleteDesignSpace(targetSpaceID);
+    /**
+     * Reads the edge rows of a page of the D3 graph of the target space under the given library version, with 
+     * one extra row that tells the writer whether another page follows.
+     */
+    public List<Map<String, Object>> getD3GraphRows(String targetSpaceID, int offset, int limit, long version) {
+    	return designSpaceStore.mapDesignSpace(targetSpaceID, Math.max(0, offset), getD3PageSize(limit) + 1, 
+    			version);
     }
     
-    private String convertDesignSpaceToPool(DesignSpace space) {
-    	String pool = "";
+    /**
+     * Writes a page of the D3 graph of the target space from rows read by getD3GraphRows.
+     */
+    public void writeD3Graph(String targetSpaceID, List<Map<String, Object>> rows, int offset, int limit, 
+    		boolean isCollapsed, boolean isCompact, OutputStream out) throws IOException {
+    	new D3GraphWriter(out, isCompact).write(targetSpaceID, rows, Math.max(0, offset), getD3PageSize(limit), 
+    			isCollapsed);
+    }
+    
+    private static int getD3PageSize(int limit) {
+    	return Math.max(1, Math.min(limit, MAX_D3_PAGE_SIZE));
+    }
+    
+    public ImportReport importSBOL(Set<SBOLDocument> sbolDocs) {
+    	return importSBOL(sbolDocs, DEFAULT_NAMESPACE);
+    }
+    
+    public ImportReport importSBOL(Set<SBOLDocument> sbolDocs, String namespace) {
+    	List<Callable<SBOLDocument>> sources = new ArrayList<Callable<SBOLDocument>>(sbolDocs.size());
     	
-    	Set<String> visitedNodeIDs = new HashSet<String>();
+    	for (final SBOLDocument sbolDoc : sbolDocs) {
+    		sources.add(new Callable<SBOLDocument>() {
+    			@Override
+    			public SBOLDocument call() {
+    				return sbolDoc;
+    			}
+    		});
+    	}
     	
-    	Stack<Node> nodeStack = new Stack<Node>();
+    	importGate.acquire();
     	
-    	Set<Node> nextNodes = new HashSet<Node>();
+    	try {
+    		return runImportPipeline(newImportPipeline(namespace, new ImportProgress()), sources);
+    	} catch (SBOLValidationException | IOException | SBOLConversionException ex) {
+    		throw new IllegalStateException(ex);
+    	} finally {
+    		importGate.release();
+    	}
+    }
+    
+    public ImportReport importSBOLFiles(List<File> sbolFiles) 
+    		throws SBOLValidationException, IOException, SBOLConversionException {
+    	return importSBOLFiles(sbolFiles, DEFAULT_NAMESPACE);
+    }
+    
+    /**
+     * Imports SBOL files on the calling thread, once admitted through the import gate. Background import jobs 
+     * are bounded by ImportJobService instead.
+     */
+    public ImportReport importSBOLFiles(List<File> sbolFiles, String namespace) 
+    		throws SBOLValidationException, IOException, SBOLConversionException {
+    	importGate.acquire();
     	
-    	nextNodes.addAll(space.getStartNodes());
+    	try {
+    		return importSBOLFiles(sbolFiles, namespace, new ImportProgress());
+    	} finally {
+    		importGate.release();
+    	}
+    }
+    
+    /**
+     * Imports SBOL files through an ImportPipeline, so that at most a few parsed documents are held in memory 
+     * at once. Constructs and part spaces are staged and published together as one new library version, so the
+     * import applies all of its files or none of them: if a file cannot be read, or the import fails or is 
+     * cancelled, the stage is discarded, nothing is published and the library is left as it was. Constructs are 
+     * added to the given library namespace; a construct imported before into another namespace is moved to this 
+     * one.
+     */
+    public ImportReport importSBOLFiles(List<File> sbolFiles, String namespace, ImportProgress progress) 
+    		throws SBOLValidationException, IOException, SBOLConversionException {
+    	List<Callable<SBOLDocument>> sources = new ArrayList<Callable<SBOLDocument>>(sbolFiles.size());
     	
-    	while (nextNodes.size() > 0) {
-    		nodeStack.addAll(nextNodes);
-    		
-    		nextNodes.clear();
-    		
-    		while(!nodeStack.isEmpty()) {
-    			Node node = nodeStack.pop();
-    			
-    			visitedNodeIDs.add(node.getNodeID());
-    			
-    			if (node.hasEdges()) {
-    				for (Edge edge : node.getEdges()) {
-    					if (!visitedNodeIDs.contains(edge.getHead().getNodeID())) {
-    						nextNodes.add(edge.getHead());
-    					}
-    					
-    					if (edge.hasComponentIDs()) {
-    						pool += edge.getComponentIDs().toString();
-    					}
-    				}
+    	for (final File sbolFile : sbolFiles) {
+    		sources.add(new Callable<SBOLDocument>() {
+    			@Override
+    			public SBOLDocument call() throws SBOLValidationException, IOException, SBOLConversionException {
+    				return SBOLReader.read(sbolFile);
     			}
-    		}
+    		});
     	}
     	
-    	return pool;
+    	return runImportPipeline(newImportPipeline(namespace, progress), sources);
     }
     
-    private void expandPartID(String partID, List<String> compIDs, List<String> compRoles)
-    		throws DesignSpaceNotFoundException {
+    /**
+     * Runs one import at a time, whether it was admitted through the import gate or started by an import job. 
+     * Each import rebuilds whole part spaces from the part spaces it reads and publishes them as replacements, 
+     * so two imports running at once would drop each other's parts from the spaces they share.
+     */
+    private ImportReport runImportPipeline(ImportPipeline pipeline, List<Callable<SBOLDocument>> sources) 
+    		throws SBOLValidationException, IOException, SBOLConversionException {
+    	importLock.lock();
+    	
+    	try {
+    		return pipeline.run(sources);
+    	} finally {
+    		importLock.unlock();
+    	}
+    }
+    
+    private ImportPipeline newImportPipeline(String namespace, ImportProgress progress) {
+    	ImportPipeline pipeline = new ImportPipeline(designSpaceStore, soCache, progress);
+    	
+    	pipeline.setNamespace(namespace);
+    	
+    	pipeline.setWorkers(importReadWorkers, importFlattenWorkers, importResolveWorkers, importPersistWorkers);
+    	
+    	pipeline.setQueueCapacity(importQueueCapacity);
+    	
+    	pipeline.setBatchSize(importBatchSize);
+    	
+    	return pipeline;
+    }
+    
+    /**
+     * Returns the string form of a pool: the component IDs of each of its positions, in brackets. The structured 
+     * form is written by PoolWriter from the same traversal.
+     */
+    private String convertDesignSpaceToPool(DesignSpace space) {
+    	StringBuilder pool = new StringBuilder();
+    	
+    	for (Edge position : new PoolPositions(space)) {
+    		pool.append(position.getComponentIDs());
+    	}
+    	
+    	return pool.toString();
+    }
+    
+    private void expandPartID(String partID, List<String> compIDs, List<String> compRoles, 
+    		Map<String, Map<String, Object>> partIDToComponents) throws DesignSpaceNotFoundException {
     	
     	boolean isReverse = false;
     	
@@ -247,113 +652,104 @@ public class DesignSpaceService {
     	
     	partID = convertSOAbbreviationToName(partID);
     	
-    	Set<String> tempIDs = getComponentIDs(partID);
+    	Map<String, Object> components = partIDToComponents.get(partID);
     	
-    	if (tempIDs.size() > 0) {
-    		if (isReverse) {
-    			for (String tempID : tempIDs) {
+    	if (components != null && components.get("componentIDs") instanceof Collection 
+    			&& ((Collection<?>) components.get("componentIDs")).size() > 0) {
+    		for (Object tempID : (Collection<?>) components.get("componentIDs")) {
+    			if (isReverse) {
     				compIDs.add(REVERSE_PREFIX + tempID);
+    			} else {
+    				compIDs.add((String) tempID);
     			}
-    		} else {
-    			compIDs.addAll(tempIDs);
     		}
     		
-    		compRoles.addAll(getComponentRoles(partID));
+    		if (components.get("componentRoles") instanceof Collection) {
+    			for (Object compRole : (Collection<?>) components.get("componentRoles")) {
+    				compRoles.add((String) compRole);
+    			}
+    		}
 		} else {
 			throw new DesignSpaceNotFoundException(partID);
 		}
     }
     
-    private void convertPoolToDesignSpace(String poolSpec, String spaceID)
-    		throws DesignSpaceNotFoundException {
-    	ArrayList<ArrayList<String>> allCompIDs = new ArrayList<ArrayList<String>>();
-		
-		ArrayList<ArrayList<String>> allCompRoles = new ArrayList<ArrayList<String>>();
+    private DesignSpace convertPoolToDesignSpace(String poolSpec, String spaceID, Set<String> specCompIDs, 
+    		long version) throws DesignSpaceNotFoundException {
+    	List<List<String>> allPartIDs = new ArrayList<List<String>>();
+    	
+    	Set<String> distinctPartIDs = new HashSet<String>();
 		
     	Matcher subPoolMatcher = Pattern.compile(POOL_PATTERN).matcher(poolSpec);
 		
 		while (subPoolMatcher.find()) {
 			Matcher partMatcher = Pattern.compile(SUB_POOL_PATTERN).matcher(subPoolMatcher.group(0));
 			
-			ArrayList<String> compIDs = new ArrayList<String>();
-			
-			ArrayList<String> compRoles = new ArrayList<String>();
+			List<String> partIDs = new ArrayList<String>();
 			
 			while (partMatcher.find()) {
-				expandPartID(partMatcher.group(0), compIDs, compRoles);
+				String partID = partMatcher.group(0);
+				
+				partIDs.add(partID);
+				
+				if (partID.startsWith(REVERSE_PREFIX)) {
+					distinctPartIDs.add(convertSOAbbreviationToName(partID.substring(REVERSE_PREFIX.length())));
+				} else {
+					distinctPartIDs.add(convertSOAbbreviationToName(partID));
+				}
 			}
 			
-			allCompIDs.add(compIDs);
-			
-			allCompRoles.add(compRoles);
+			allPartIDs.add(partIDs);
 		}
 		
-		createDesignSpace(spaceID, allCompIDs, allCompRoles);
-    }
-    
-    private void convertComponentDefinitionToDesignSpace(ComponentDefinition compDef,
-    		SequenceOntology so) {
-		List<ComponentDefinition> leafDefs = new LinkedList<ComponentDefinition>();
-		
-		List<Boolean> areLeavesForward = new LinkedList<Boolean>();
+		Map<String, Map<String, Object>> partIDToComponents = getComponents(new ArrayList<String>(distinctPartIDs), 
+				version);
 		
-		flattenRootComponentDefinition(compDef, leafDefs, areLeavesForward);
+		ArrayList<ArrayList<String>> allCompIDs = new ArrayList<ArrayList<String>>(allPartIDs.size());
 		
-		ArrayList<ArrayList<String>> allCompIDs = new ArrayList<ArrayList<String>>();
+		ArrayList<ArrayList<String>> allCompRoles = new ArrayList<ArrayList<String>>(allPartIDs.size());
 		
-		ArrayList<ArrayList<String>> allCompRoles = new ArrayList<ArrayList<String>>();
-
-		for (int i = 0; i < leafDefs.size(); i++) {
+		for (List<String> partIDs : allPartIDs) {
 			ArrayList<String> compIDs = new ArrayList<String>();
 			
-			if (areLeavesForward.get(i).booleanValue()) {
-				compIDs.add(leafDefs.get(i).getPersistentIdentity().toString());
-			} else {
-				compIDs.add(REVERSE_PREFIX + leafDefs.get(i).getPersistentIdentity().toString());
+			ArrayList<String> compRoles = new ArrayList<String>();
+			
+			for (String partID : partIDs) {
+				expandPartID(partID, compIDs, compRoles, partIDToComponents);
 			}
-
-			ArrayList<String> compRoles = new ArrayList<String>(convertSOTermsToNames(leafDefs.get(i).getRoles(), so));
-
+			
+			specCompIDs.addAll(compIDs);
+			
 			allCompIDs.add(compIDs);
 			
 			allCompRoles.add(compRoles);
 		}
 		
-		createDesignSpace(compDef.getPersistentIdentity().toString(), allCompIDs, allCompRoles);
+		return buildDesignSpace(spaceID, allCompIDs, allCompRoles);
     }
     
-    private void createPartSpace(String partID, String compID, ArrayList<String> compRoles,
-    		Set<String> spaceIDs) {
-    	if (spaceIDs.contains(partID)) {
-			DesignSpace partSpace = loadDesignSpace(partID, 2);
+    private DesignSpace buildDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		DesignSpace space = new DesignSpace(outputSpaceID, 0);
+		
+		Node tail = space.createStartNode();
+		
+		for (int i = 0; i < allCompIDs.size(); i++) {
+			Node head;
 			
-			if (partSpace.hasNodes()) {
-				for (Node startNode : partSpace.getStartNodes()) {
-					if (startNode.hasEdges()) {
-						for (Edge edge : startNode.getEdges()) {
-							edge.addComponent(compID, compRoles);
-						}
-					}
-				}
-				
-				saveDesignSpace(partSpace);
+			if (i < allCompIDs.size() - 1) {
+				head = space.createNode();
+			} else {
+				head = space.createAcceptNode();
 			}
-		} else {
-			ArrayList<String> compIDs = new ArrayList<String>();
-			
-			compIDs.add(compID);
 			
-			ArrayList<ArrayList<String>> allCompIDs = new ArrayList<ArrayList<String>>();
+			tail.createEdge(head, allCompIDs.get(i), allCompRoles.get(i));
 			
-			allCompIDs.add(compIDs);
-			
-			ArrayList<ArrayList<String>> allCompRoles = new ArrayList<ArrayList<String>>();
-			
-			allCompRoles.add(compRoles);
-			
-			createDesignSpace(partID, allCompIDs, allCompRoles);
+			tail = head;
 		}
-    }
+		
+		return space;
+	}
     
 //    private void createComponentEdge(String targetSpaceID, ArrayList<String> compIDs, ArrayList<String> compRoles) {
 //    	designSpaceRepository.createComponentEdge(targetSpaceID, compIDs, compRoles);
@@ -363,221 +759,86 @@ public class DesignSpaceService {
 //    	designSpaceRepository.createDesignSpace(outputSpaceID);
 //    }
     
-    private void createDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> compIDs, ArrayList<ArrayList<String>> compRoles) {
-    	designSpaceRepository.createDesignSpace(outputSpaceID, compIDs, compRoles);
-    }
-    
-    private void flattenComponentDefinition(ComponentDefinition compDef, List<ComponentDefinition> leafDefs,
-    		List<Boolean> areLeavesForward, boolean isForward) {
-		Set<Component> subComps = compDef.getComponents();
-
-		if (subComps.size() == 0) {
-			leafDefs.add(compDef);
-			
-			areLeavesForward.add(new Boolean(isForward));
-		} else {
-			Set<SequenceAnnotation> seqAnnos = compDef.getSequenceAnnotations();
-			
-			HashMap<String, SequenceAnnotation> compIDToSeqAnno = new HashMap<String, SequenceAnnotation>();
-			
-			for (SequenceAnnotation seqAnno : seqAnnos) {
-				if (seqAnno.getComponentURI() != null) {
-					if (getStartOfSequenceAnnotation(seqAnno) > 0) {
-						compIDToSeqAnno.put(seqAnno.getComponentURI().toString(), seqAnno);
-					}
-				}
-			}
-			
-			List<Component> sortedSubComps = new ArrayList<Component>(subComps.size());
-			
-			for (Component subComp : subComps) {
-				if (compIDToSeqAnno.containsKey(subComp.getIdentity().toString())) {
-					SequenceAnnotation seqAnno = compIDToSeqAnno.get(subComp.getIdentity().toString());
-					
-					int i = 0;
-
-					while (i < sortedSubComps.size() 
-							&& getStartOfSequenceAnnotation(seqAnno)
-									> getStartOfSequenceAnnotation(
-											compIDToSeqAnno.get(sortedSubComps.get(i).getIdentity().toString()))) {
-						i++;
-					}
-
-					sortedSubComps.add(i, subComp);
-				}
-			}
-			
-			for (Component subComp : sortedSubComps) {
-				SequenceAnnotation seqAnno = compIDToSeqAnno.get(subComp.getIdentity().toString());
-			
-				if (isSequenceAnnotationForward(seqAnno)) {
-					flattenComponentDefinition(subComp.getDefinition(), leafDefs, areLeavesForward, isForward);
-				} else {
-					flattenComponentDefinition(subComp.getDefinition(), leafDefs, areLeavesForward, !isForward);
-				}
-			}
-		}
-    }
-    
-    private void flattenRootComponentDefinition(ComponentDefinition rootDef, List<ComponentDefinition> leafDefs,
-    		List<Boolean> areLeavesForward) {
-    	flattenComponentDefinition(rootDef, leafDefs, areLeavesForward, true);
-    }
-    
 //    private Integer getNumNodes(String targetSpaceID) {
 //    	return designSpaceRepository.getNumNodes(targetSpaceID);
 //    }
     
-    private Set<String> getComponentIDs(String targetSpaceID) {
-    	return designSpaceRepository.getComponentIDs(targetSpaceID);
-    }
-    
-    private Set<String> getComponentRoles(String targetSpaceID) {
-    	return designSpaceRepository.getComponentRoles(targetSpaceID);
+    private Map<String, Map<String, Object>> getComponents(List<String> targetSpaceIDs, long version) {
+    	Map<String, Map<String, Object>> spaceIDToComponents = new HashMap<String, Map<String, Object>>();
+    	
+    	for (Map<String, Object> row : designSpaceStore.getComponents(targetSpaceIDs, version)) {
+    		spaceIDToComponents.put((String) row.get("spaceID"), row);
+    	}
+    	
+    	return spaceIDToComponents;
     }
     
     private Set<String> getDesignSpaceIDs() {
-    	return designSpaceRepository.getDesignSpaceIDs();
+    	return designSpaceStore.getDesignSpaceIDs();
     }
     
-    private Set<String> getCompositeDesignSpaceIDs() {
-    	return designSpaceRepository.getCompositeDesignSpaceIDs();
+    private Set<String> getCompositeDesignSpaceIDs(Set<String> compIDs, Set<String> namespaces, long version) {
+    	return designSpaceStore.getCompositeDesignSpaceIDs(compIDs, namespaces, version);
     }
     
-    private Set<ComponentDefinition> getDNAComponentDefinitions(SBOLDocument sbolDoc) {
-    	Set<ComponentDefinition> dnaCompDefs = new HashSet<ComponentDefinition>();
-    	
-    	for (ComponentDefinition compDef : sbolDoc.getComponentDefinitions()) {
-			if (isDNAComponentDefinition(compDef)) {
-				dnaCompDefs.add(compDef);
-			}
-		}
-    	return dnaCompDefs;
-    }
-    
-    private boolean isDNAComponentDefinition(ComponentDefinition compDef) {
-    	Set<URI> compTypes = compDef.getTypes();
-    	if (compTypes.size() == 0) {
-    		return false;
-    	} else if (compTypes.contains(ComponentDefinition.DNA)) {
-    		return true;
-    	} else {
-    		return false;
-    	}
+    public List<String> getCompositeDesignSpaceIDs(String afterSpaceID, int limit) {
+    	return designSpaceStore.getCompositeDesignSpaceIDs(afterSpaceID != null ? afterSpaceID : "", limit);
     }
     
-    private ArrayList<String> convertSOTermsToNames(Set<URI> soTerms,
-    		SequenceOntology so) {
-    	ArrayList<String> roleNames= new ArrayList<String>();
+    /**
+     * Returns a page of space rows, in ID order, after the given space ID, together with the ID to pass as 
+     * afterSpaceID for the next page, or null after the last page. Rows carry the sizes of each space; see 
+     * DesignSpaceStore.listDesignSpaces. The limit is capped at MAX_SPACE_PAGE_SIZE.
+     */
+    public Map<String, Object> listDesignSpaces(String afterSpaceID, int limit) {
+    	int pageSize = Math.max(1, Math.min(limit, MAX_SPACE_PAGE_SIZE));
     	
-		if (soTerms.size() == 0) {
-			roleNames.add("sequence_feature");
-		} else {
-			for (URI soIdentifier : soTerms) {
-//				if (soIdentifier.equals(SequenceOntology.PROMOTER)) {
-//		    		roleNames.add("promoter");
-//		    	} else if (soIdentifier.equals(SequenceOntology.type("SO:0000374"))) {
-//		    		roleNames.add("ribozyme");
-//		    	} else if (soIdentifier.equals(SequenceOntology.INSULATOR)) {
-//		    		roleNames.add("insulator");
-//		    	} else if (soIdentifier.equals(SequenceOntology.RIBOSOME_ENTRY_SITE)) {
-//		    		roleNames.add("ribosome_entry_site");
-//		    	} else if (soIdentifier.equals(SequenceOntology.CDS)) {
-//		    		roleNames.add("CDS");
-//		    	} else if (soIdentifier.equals(SequenceOntology.TERMINATOR)) {
-//		    		roleNames.add("terminator");
-//		    	} else if (soIdentifier.equals(SequenceOntology.type("SO:0001953"))) {
-//		    		roleNames.add("restriction_enzyme_assembly_scar");
-//		    	} else if (soIdentifier.equals(SequenceOntology.RESTRICTION_ENZYME_RECOGNITION_SITE)) {
-//		    		roleNames.add("restriction_enzyme_recognition_site");
-//		    	} else if (soIdentifier.equals(SequenceOntology.PRIMER_BINDING_SITE)) {
-//		    		roleNames.add("primer_binding_site");
-//		    	} else {
-//		    		roleNames.add("sequence_feature");
-//		    	}
-				roleNames.add(so.getName(soIdentifier));
-			}
-		}
-		
-    	return roleNames;
+    	return pageSpaceRows(designSpaceStore.listDesignSpaces(afterSpaceID != null ? afterSpaceID : "", 
+    			pageSize + 1), pageSize);
     }
     
-    private String convertSOAbbreviationToName(String abbreviation) {
-    	if (abbreviation.equals("RBS")) {
-    		return "ribosome_entry_site";
-    	} else if (abbreviation.equals("scar")) {
-    		return "restriction_enzyme_assembly_scar";
-    	} else {
-    		return abbreviation;
-    	}
+    /**
+     * Returns a page of the rows of spaces with an edge labeled with the given component ID or role, paged like 
+     * listDesignSpaces.
+     */
+    public Map<String, Object> searchDesignSpaces(String label, String afterSpaceID, int limit) {
+    	int pageSize = Math.max(1, Math.min(limit, MAX_SPACE_PAGE_SIZE));
+    	
+    	return pageSpaceRows(designSpaceStore.searchDesignSpaces(label, afterSpaceID != null ? afterSpaceID : "", 
+    			pageSize + 1), pageSize);
     }
     
-    private int getStartOfSequenceAnnotation(SequenceAnnotation seqAnno) {
-    	int start = -1;
+    public Map<String, Object> getDesignSpaceSummary(String targetSpaceID) throws DesignSpaceNotFoundException {
+    	Map<String, Object> summary = designSpaceStore.getDesignSpaceSummary(targetSpaceID);
     	
-    	for (Location location : seqAnno.getLocations()) {
-    		if (location instanceof Range) {
-    			Range range = (Range) location;
-    			
-    			if (start < 0 || range.getStart() < start) {
-    				start = range.getStart();
-    			}
-    		} else if (location instanceof Cut) {
-    			Cut cut = (Cut) location;
-    			
-    			if (start < 0 || cut.getAt() < start) {
-    				start = cut.getAt();
-    			}
-    		}
+    	if (summary == null) {
+    		throw new DesignSpaceNotFoundException(targetSpaceID);
     	}
     	
-    	return start;
+    	return summary;
     }
     
-    private boolean isSequenceAnnotationForward(SequenceAnnotation seqAnno) {
-    	for (Location location : seqAnno.getLocations()) {
-    		if (location.getOrientation().equals(OrientationType.REVERSECOMPLEMENT)) {
-    			return false;
-    		}
+    private Map<String, Object> pageSpaceRows(List<Map<String, Object>> rows, int pageSize) {
+    	Map<String, Object> page = new LinkedHashMap<String, Object>();
+    	
+    	if (rows.size() > pageSize) {
+    		page.put("spaces", rows.subList(0, pageSize));
+    		page.put("nextAfterSpaceID", rows.get(pageSize - 1).get("spaceID"));
+    	} else {
+    		page.put("spaces", rows);
+    		page.put("nextAfterSpaceID", null);
     	}
     	
-    	return true;
+    	return page;
     }
     
-    private List<DesignSpace> matchDesignSpace(String querySpaceID, List<String> queriedSpaceIDs, String outputSpacePrefix) {
-    	List<String> querySpaceIDs = new ArrayList<String>(1);
-    	
-    	querySpaceIDs.add(querySpaceID);
-    	
-    	return matchDesignSpaces(querySpaceIDs, queriedSpaceIDs, outputSpacePrefix).get(0);
+    private String convertSOAbbreviationToName(String abbreviation) {
+    	return soCache.getNameOfAbbreviation(abbreviation);
     }
     
-    private List<List<DesignSpace>> matchDesignSpaces(List<String> querySpaceIDs, List<String> queriedSpaceIDs, String outputSpacePrefix) {
-    	List<DesignSpace> querySpaces = new ArrayList<DesignSpace>(querySpaceIDs.size());
-    	
-    	int k = 0;
-    	
-    	System.out.println("loading " + querySpaceIDs.size());
-    	
-    	for (String querySpaceID : querySpaceIDs) {
-    		k++;
-    		System.out.println(k);
-    		
-    		querySpaces.add(loadDesignSpace(querySpaceID, 2));
-    	}
-    	
-    	List<DesignSpace> queriedSpaces = new ArrayList<DesignSpace>(queriedSpaceIDs.size());
-    	
-    	k = 0;
-    	
-    	System.out.println("loading " + queriedSpaceIDs.size());
-    	
-    	for (String queriedSpaceID : queriedSpaceIDs) {
-    		k++;
-    		System.out.println(k);
-    		
-    		queriedSpaces.add(loadDesignSpace(queriedSpaceID, 2));
-    	}
+    private List<List<DesignSpace>> matchDesignSpaces(List<DesignSpace> querySpaces, List<String> queriedSpaceIDs, String outputSpacePrefix,
+    		long version) {
+    	List<DesignSpace> queriedSpaces = loadDesignSpaces(queriedSpaceIDs, version);
     	
     	List<List<DesignSpace>> allOutputSpaces = new ArrayList<List<DesignSpace>>(querySpaces.size());
     	
@@ -585,6 +846,10 @@ public class DesignSpaceService {
     		allOutputSpaces.add(new ArrayList<DesignSpace>(queriedSpaces.size()));
     		
     		for (int j = 0; j < queriedSpaces.size(); j++) {
+    			if (queriedSpaces.get(j) == null) {
+    				continue;
+    			}
+    			
     			DesignSpace outputSpace = queriedSpaces.get(j).copy(outputSpacePrefix + j);
 
     			List<DesignSpace> inputSpaces = new ArrayList<DesignSpace>(2);
@@ -705,14 +970,14 @@ public class DesignSpaceService {
     	DesignSpace outputSpace;
     	
     	if (prunedSpaceIDs.remove(outputSpaceID)) {
-    		outputSpace = loadDesignSpace(outputSpaceID, 2);
+    		outputSpace = loadDesignSpace(outputSpaceID);
     		
     		for (String inputSpaceID : prunedSpaceIDs) {
-        		prunedSpaces.add(loadDesignSpace(inputSpaceID, 2));
+        		prunedSpaces.add(loadDesignSpace(inputSpaceID));
         	}
     	} else {
     		for (String inputSpaceID : prunedSpaceIDs) {
-    			DesignSpace inputSpace = loadDesignSpace(inputSpaceID, 2);
+    			DesignSpace inputSpace = loadDesignSpace(inputSpaceID);
     			
     			prunedSpaces.add(inputSpace);
     		}
@@ -953,36 +1218,23 @@ public class DesignSpaceService {
     }
     
 	private void deleteEdges(Set<Edge> deletedEdges) {
-		edgeRepository.delete(deletedEdges);
+		designSpaceStore.deleteEdges(deletedEdges);
 	}
 	
 	private void deleteNodes(Set<Node> deletedNodes) {
-		nodeRepository.delete(deletedNodes);
+		designSpaceStore.deleteNodes(deletedNodes);
 	}
 
-	private void deleteNodeCopyIndices(String targetSpaceID) {
-    	designSpaceRepository.deleteNodeCopyIndices(targetSpaceID);
-    }
-
-	private DesignSpace findDesignSpace(String targetSpaceID) {
-    	return designSpaceRepository.findBySpaceID(targetSpaceID);
-    }
-	
-	private DesignSpace loadDesignSpace(String targetSpaceID, int depth) {
-		return designSpaceRepository.findOne(getGraphID(targetSpaceID), depth);
+	private DesignSpace loadDesignSpace(String targetSpaceID) {
+		return designSpaceStore.loadDesignSpace(targetSpaceID);
 	}
 	
-	private Long getGraphID(String targetSpaceID) {
-		Set<Integer> graphIDs = designSpaceRepository.getGraphID(targetSpaceID);
-		if (graphIDs.size() > 0) {
-			return new Long(graphIDs.iterator().next());
-		} else {
-			return null;
-		}
+	private List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs, long version) {
+		return designSpaceStore.loadDesignSpaces(targetSpaceIDs, version);
 	}
 	
 	private boolean hasDesignSpace(String targetSpaceID) {
-		return findDesignSpace(targetSpaceID) != null;
+		return getDesignSpaceIDs().contains(targetSpaceID);
 	}
 	
 //	private boolean hasNodes(String targetSpaceID) {
@@ -1015,72 +1267,10 @@ public class DesignSpaceService {
     	return false;
     }
 
-	private Map<String, Object> mapDesignSpaceToD3Format(List<Map<String, Object>> spaceMap) {
-		Map<String, Object> d3Graph = new HashMap<String, Object>();
-	    List<Map<String,Object>> nodes = new ArrayList<Map<String,Object>>();
-	    List<Map<String,Object>> links = new ArrayList<Map<String,Object>>();
-	    int i = 0;
-	    for (Map<String, Object> row : spaceMap) {
-	        if (d3Graph.isEmpty()) {
-	        	d3Graph.put("spaceID", row.get("spaceID"));
-	        }
-	        Map<String, Object> tail = makeD3("nodeID", row.get("tailID"), "nodeType", row.get("tailType"));
-	        int source = nodes.indexOf(tail);
-	        if (source == -1) {
-	        	nodes.add(tail);
-	        	source = i++;
-	        }
-	        Map<String, Object> head = makeD3("nodeID", row.get("headID"), "nodeType", row.get("headType"));
-	        int target = nodes.indexOf(head);
-	        if (target == -1) {
-	        	nodes.add(head);
-	        	target = i++;
-	        }
-	        Map<String, Object> link = makeD3("source", source, "target", target);
-	        if (row.containsKey("componentRoles") && row.get("componentRoles") != null) {
-	        	link.put("componentRoles", row.get("componentRoles"));
-	        }
-	        links.add(link);
-	    }
-	    d3Graph.putAll(makeD3("nodes", nodes, "links", links));
-	    return d3Graph;
-	}
-
-	private Map<String, Object> makeD3(String key1, Object value1, String key2, Object value2) {
-	    Map<String, Object> result = new HashMap<String, Object>();
-	    result.put(key1, value1);
-	    result.put(key2, value2);
-	    return result;
-	}
-	
-	private void saveDesignSpace(DesignSpace space) {
-		designSpaceRepository.save(space);
-	}
-	
 //	private void setNodeType(String targetSpaceID, String targetNodeID, String nodeType) {
 //		designSpaceRepository.setNodeType(targetSpaceID, targetNodeID, nodeType);
 //	}
 
-	private void unionDesignSpace(String inputSpaceID, String outputSpaceID) {
-        designSpaceRepository.unionDesignSpace(inputSpaceID, outputSpaceID);
-    }
-	
-	private void unionDesignSpaces(List<String> inputSpaceIDs, String outputSpaceID) {
-		Set<String> prunedSpaceIDs = new HashSet<String>(inputSpaceIDs);
-		
-		prunedSpaceIDs.remove(outputSpaceID);
-		
-		for (String inputSpaceID : prunedSpaceIDs) {
-			unionDesignSpace(inputSpaceID, outputSpaceID);
-		}
-		
-		deleteNodeCopyIndices(outputSpaceID);
-		
-		if (inputSpaceIDs.contains(outputSpaceID)) {
-    		prunedSpaceIDs.add(outputSpaceID);
-    	}
-    }
-    
     private void validateListParameter(String parameterName, List<String> parameter)
     		throws ParameterEmptyException {
     	if (parameter.size() == 0) {
@@ -0,0 +1,73 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sbolstandard.core2.ComponentDefinition;
+
+/**
+ * Memoises the leaf sequence of each flattened ComponentDefinition, keyed by identity, so that definitions shared
+ * by many composites are only flattened once per document. Leaf orientations are recorded relative to the 
+ * forward strand of the flattened definition. The memo may be shared by concurrent flattening workers; a
+ * definition flattened by two workers at once is simply stored twice with the same leaves.
+ */
+public class FlattenedDefinitions {
+	ConcurrentHashMap<String, Leaves> defIDToLeaves;
+	
+	public FlattenedDefinitions() {
+		defIDToLeaves = new ConcurrentHashMap<String, Leaves>();
+	}
+	
+	public boolean contains(String defID) {
+		return defIDToLeaves.containsKey(defID);
+	}
+	
+	public List<ComponentDefinition> getLeafDefinitions(String defID) {
+		return defIDToLeaves.get(defID).leafDefs;
+	}
+	
+	public List<Boolean> getLeafOrientations(String defID) {
+		return defIDToLeaves.get(defID).areLeavesForward;
+	}
+	
+	public void put(String defID, List<ComponentDefinition> leafDefs, List<Boolean> areLeavesForward) {
+		defIDToLeaves.put(defID, new Leaves(leafDefs, areLeavesForward));
+	}
+	
+	private static class Leaves {
+		final List<ComponentDefinition> leafDefs;
+		
+		final List<Boolean> areLeavesForward;
+		
+		Leaves(List<ComponentDefinition> leafDefs, List<Boolean> areLeavesForward) {
+			this.leafDefs = leafDefs;
+			
+			this.areLeavesForward = areLeavesForward;
+		}
+	}
+}
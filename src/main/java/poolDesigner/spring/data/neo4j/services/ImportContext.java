@@ -0,0 +1,132 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * State shared by the documents of one SBOL import: the design spaces that already exist, the content hashes of
+ * previously imported constructs and part entries, the buffered part space labels and the running report.
+ */
+public class ImportContext {
+	Set<String> spaceIDs;
+	
+	Set<String> existingSpaceIDs;
+	
+	HashMap<String, String> spaceIDToContentHash;
+	
+	HashMap<String, String> compIDToPartHash;
+	
+	HashMap<String, List<String>> compIDToPartSpaceIDs;
+	
+	Set<String> changedPartIDs;
+	
+	PartSpaceLabels partLabels;
+	
+	ImportReport report;
+	
+	ImportProgress progress;
+	
+	public ImportContext(Set<String> spaceIDs, ImportProgress progress) {
+		this.progress = progress;
+		
+		this.spaceIDs = spaceIDs;
+		
+		existingSpaceIDs = new HashSet<String>(spaceIDs);
+		
+		spaceIDToContentHash = new HashMap<String, String>();
+		
+		compIDToPartHash = new HashMap<String, String>();
+		
+		compIDToPartSpaceIDs = new HashMap<String, List<String>>();
+		
+		changedPartIDs = new LinkedHashSet<String>();
+		
+		partLabels = new PartSpaceLabels();
+		
+		report = new ImportReport();
+	}
+	
+	public void addSpaceID(String spaceID) {
+		spaceIDs.add(spaceID);
+	}
+	
+	public boolean hasSpaceID(String spaceID) {
+		return spaceIDs.contains(spaceID);
+	}
+	
+	public Set<String> getExistingSpaceIDs() {
+		return existingSpaceIDs;
+	}
+	
+	public String getContentHash(String spaceID) {
+		return spaceIDToContentHash.get(spaceID);
+	}
+	
+	public void putContentHash(String spaceID, String contentHash) {
+		spaceIDToContentHash.put(spaceID, contentHash);
+	}
+	
+	public String getPartHash(String compID) {
+		return compIDToPartHash.get(compID);
+	}
+	
+	public List<String> getPartSpaceIDs(String compID) {
+		return compIDToPartSpaceIDs.get(compID);
+	}
+	
+	public void loadPartEntry(String compID, String partHash, List<String> partSpaceIDs) {
+		compIDToPartHash.put(compID, partHash);
+		
+		compIDToPartSpaceIDs.put(compID, partSpaceIDs);
+	}
+	
+	public void putPartEntry(String compID, String partHash, List<String> partSpaceIDs) {
+		loadPartEntry(compID, partHash, partSpaceIDs);
+		
+		changedPartIDs.add(compID);
+	}
+	
+	public Set<String> getChangedPartIDs() {
+		return changedPartIDs;
+	}
+	
+	public PartSpaceLabels getPartLabels() {
+		return partLabels;
+	}
+	
+	public ImportReport getReport() {
+		return report;
+	}
+	
+	public ImportProgress getProgress() {
+		return progress;
+	}
+}
@@ -0,0 +1,142 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * An SBOL import running in the background. Its status, stage counters and report can be polled while it runs.
+ */
+public class ImportJob {
+	String jobID;
+	
+	volatile JobStatus status;
+	
+	volatile String message;
+	
+	volatile long finishTime;
+	
+	long submitTime;
+	
+	List<File> sbolFiles;
+	
+	String namespace;
+	
+	ImportProgress progress;
+	
+	volatile ImportReport report;
+	
+	public ImportJob(String jobID, List<File> sbolFiles, String namespace) {
+		this.jobID = jobID;
+		
+		this.sbolFiles = sbolFiles;
+		
+		this.namespace = namespace;
+		
+		status = JobStatus.QUEUED;
+		
+		submitTime = System.currentTimeMillis();
+		
+		progress = new ImportProgress();
+	}
+	
+	public String getJobID() {
+		return jobID;
+	}
+	
+	public String getStatus() {
+		return status.getValue();
+	}
+	
+	public String getNamespace() {
+		return namespace;
+	}
+	
+	public String getMessage() {
+		return message;
+	}
+	
+	public List<ImportStage> getStages() {
+		return progress.getStages();
+	}
+	
+	public ImportReport getReport() {
+		return report;
+	}
+	
+	public boolean isFinished() {
+		return status == JobStatus.COMPLETED || status == JobStatus.FAILED || status == JobStatus.CANCELLED;
+	}
+	
+	public long getFinishTime() {
+		return finishTime;
+	}
+	
+	public long getSubmitTime() {
+		return submitTime;
+	}
+	
+	List<File> getSBOLFiles() {
+		return sbolFiles;
+	}
+	
+	ImportProgress getProgress() {
+		return progress;
+	}
+	
+	void finish(JobStatus status, ImportReport report, String message) {
+		this.report = report;
+		
+		this.message = message;
+		
+		finishTime = System.currentTimeMillis();
+		
+		this.status = status;
+	}
+	
+	void setStatus(JobStatus status) {
+		this.status = status;
+	}
+	
+	public enum JobStatus {
+		QUEUED ("queued"),
+		RUNNING ("running"),
+		COMPLETED ("completed"),
+		FAILED ("failed"),
+		CANCELLED ("cancelled");
+		
+		private final String value;
+		
+		JobStatus(String value) {
+			this.value = value;
+		}
+		
+		public String getValue() {
+			return value;
+		}
+	}
+}
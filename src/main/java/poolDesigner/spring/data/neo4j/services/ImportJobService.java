@@ -0,0 +1,183 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import poolDesigner.spring.data.neo4j.exception.AdmissionRejectedException;
+import poolDesigner.spring.data.neo4j.exception.ImportCancelledException;
+import poolDesigner.spring.data.neo4j.services.ImportJob.JobStatus;
+
+/**
+ * Runs SBOL imports in the background on a fixed pool of worker threads. Jobs wait in a bounded queue, and a job
+ * submitted while the queue is full is rejected. Finished jobs are kept for polling until their retention period 
+ * has passed.
+ */
+@Service
+public class ImportJobService {
+	
+	@Autowired DesignSpaceService designSpaceService;
+	
+	@Value("${poolDesigner.import.jobThreads:1}")
+	int jobThreads;
+	
+	@Value("${poolDesigner.import.jobQueueCapacity:16}")
+	int jobQueueCapacity;
+	
+	@Value("${poolDesigner.import.jobRetentionMillis:3600000}")
+	long jobRetentionMillis;
+	
+	@Value("${poolDesigner.admission.retryAfterSeconds:10}")
+	int retryAfterSeconds;
+	
+	ThreadPoolExecutor executor;
+	
+	AtomicLong rejectedJobs = new AtomicLong();
+	
+	ConcurrentHashMap<String, ImportJob> jobs = new ConcurrentHashMap<String, ImportJob>();
+	
+	@PostConstruct
+	public void startWorkers() {
+		executor = new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS, 
+				new ArrayBlockingQueue<Runnable>(Math.max(1, jobQueueCapacity)));
+	}
+	
+	@PreDestroy
+	public void stopWorkers() {
+		executor.shutdownNow();
+	}
+	
+	public ImportJob submitImport(List<File> sbolFiles) {
+		return submitImport(sbolFiles, DesignSpaceService.DEFAULT_NAMESPACE);
+	}
+	
+	/**
+	 * Submits spooled SBOL files for import into a library namespace. The job takes ownership of the files and 
+	 * deletes them when it finishes, unless the job is rejected because the queue is full.
+	 */
+	public ImportJob submitImport(List<File> sbolFiles, String namespace) {
+		final ImportJob job = new ImportJob(UUID.randomUUID().toString(), sbolFiles, namespace);
+		
+		jobs.put(job.getJobID(), job);
+		
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					runImport(job);
+				}
+			});
+		} catch (RejectedExecutionException ex) {
+			jobs.remove(job.getJobID());
+			
+			rejectedJobs.incrementAndGet();
+			
+			throw new AdmissionRejectedException("import job", true, retryAfterSeconds);
+		}
+		
+		return job;
+	}
+	
+	public int getQueuedJobCount() {
+		return executor.getQueue().size();
+	}
+	
+	public int getRunningJobCount() {
+		return executor.getActiveCount();
+	}
+	
+	public long getRejectedJobCount() {
+		return rejectedJobs.get();
+	}
+	
+	public ImportJob getJob(String jobID) {
+		return jobs.get(jobID);
+	}
+	
+	public ImportJob cancelJob(String jobID) {
+		ImportJob job = jobs.get(jobID);
+		
+		if (job != null) {
+			job.getProgress().cancel();
+		}
+		
+		return job;
+	}
+	
+	@Scheduled(fixedDelay = 60000)
+	public void evictFinishedJobs() {
+		long evictionTime = System.currentTimeMillis() - jobRetentionMillis;
+		
+		Iterator<ImportJob> jobIter = jobs.values().iterator();
+		
+		while (jobIter.hasNext()) {
+			ImportJob job = jobIter.next();
+			
+			if (job.isFinished() && job.getFinishTime() < evictionTime) {
+				jobIter.remove();
+			}
+		}
+	}
+	
+	private void runImport(ImportJob job) {
+		try {
+			if (job.getProgress().isCancelled()) {
+				job.finish(JobStatus.CANCELLED, null, new ImportCancelledException().getMessage());
+			} else {
+				job.setStatus(JobStatus.RUNNING);
+				
+				job.finish(JobStatus.COMPLETED, designSpaceService.importSBOLFiles(job.getSBOLFiles(), job.getNamespace(), 
+						job.getProgress()), 
+						"SBOL was successfully imported.");
+			}
+		} catch (ImportCancelledException ex) {
+			job.finish(JobStatus.CANCELLED, null, ex.getMessage());
+		} catch (Exception ex) {
+			job.finish(JobStatus.FAILED, null, ex.getMessage());
+		} finally {
+			for (File sbolFile : job.getSBOLFiles()) {
+				sbolFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,912 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.Cut;
+import org.sbolstandard.core2.Location;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.Range;
+import org.sbolstandard.core2.SBOLConversionException;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.SequenceAnnotation;
+
+import poolDesigner.spring.data.neo4j.exception.ImportCancelledException;
+import poolDesigner.spring.data.neo4j.store.DesignSpaceStore;
+import poolDesigner.spring.data.neo4j.services.ImportProgress.Stage;
+
+/**
+ * Imports SBOL documents through four stages connected by bounded queues: reading documents, flattening 
+ * definitions into leaf sequences, resolving Sequence Ontology roles and content hashes, and persisting 
+ * constructs in batches. Each stage runs on its own workers, so parsing the next document overlaps with
+ * writing the constructs of the previous one, and a full queue holds back the stages upstream of it.
+ * 
+ * Part spaces and part entries are written once every stage has drained, as before. Constructs and part spaces 
+ * are staged in a library stage, batch by batch from the pipeline's worker threads, and the stage is published
+ * as one new library version once every space is staged. Pool designs therefore see all of an import or none
+ * of it, and a cancelled or failed import discards its stage. Part entries are saved after the publish.
+ * If a document cannot be read, the import fails like any other: no further documents are read, the stage
+ * is discarded, and the read error is rethrown, so no version with only part of the documents is published.
+ * 
+ * Constructs are created in the pipeline's library namespace. The namespace of a construct other than the 
+ * default is part of its content hash, so importing a construct into a different namespace rewrites it there.
+ * 
+ * With more than one persistence worker, a construct whose identity appears in more than one document of 
+ * the same import may be written twice, so the default is a single persistence worker.
+ */
+public class ImportPipeline {
+	DesignSpaceStore store;
+	
+	SequenceOntologyCache soCache;
+	
+	ImportProgress progress;
+	
+	ImportContext context;
+	
+	int readWorkers = 1;
+	
+	int flattenWorkers = 1;
+	
+	int resolveWorkers = 1;
+	
+	int persistWorkers = 1;
+	
+	int queueCapacity = 256;
+	
+	int batchSize = 100;
+	
+	String namespace = DesignSpaceService.DEFAULT_NAMESPACE;
+	
+	long libraryStage;
+	
+	ConcurrentLinkedQueue<Callable<SBOLDocument>> sources;
+	
+	ExecutorService executor;
+	
+	CountDownLatch completion;
+	
+	volatile Throwable failure;
+	
+	private static final ImportEntry END = new ImportEntry(null, null);
+	
+	public ImportPipeline(DesignSpaceStore store, SequenceOntologyCache soCache, 
+			ImportProgress progress) {
+		this.store = store;
+		
+		this.soCache = soCache;
+		
+		this.progress = progress;
+	}
+	
+	public void setNamespace(String namespace) {
+		this.namespace = namespace;
+	}
+	
+	public void setWorkers(int readWorkers, int flattenWorkers, int resolveWorkers, int persistWorkers) {
+		this.readWorkers = Math.max(1, readWorkers);
+		
+		this.flattenWorkers = Math.max(1, flattenWorkers);
+		
+		this.resolveWorkers = Math.max(1, resolveWorkers);
+		
+		this.persistWorkers = Math.max(1, persistWorkers);
+	}
+	
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = Math.max(1, queueCapacity);
+	}
+	
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+	
+	public ImportReport run(List<Callable<SBOLDocument>> sbolSources) 
+			throws SBOLValidationException, IOException, SBOLConversionException {
+		beginImport();
+		
+		sources = new ConcurrentLinkedQueue<Callable<SBOLDocument>>(sbolSources);
+		
+		BlockingQueue<ImportEntry> definitionQueue = new ArrayBlockingQueue<ImportEntry>(queueCapacity);
+		
+		BlockingQueue<ImportEntry> flattenedQueue = new ArrayBlockingQueue<ImportEntry>(queueCapacity);
+		
+		BlockingQueue<ImportEntry> resolvedQueue = new ArrayBlockingQueue<ImportEntry>(queueCapacity);
+		
+		int numWorkers = readWorkers + flattenWorkers + resolveWorkers + persistWorkers;
+		
+		executor = Executors.newFixedThreadPool(numWorkers);
+		
+		completion = new CountDownLatch(numWorkers);
+		
+		AtomicInteger remainingReaders = new AtomicInteger(readWorkers);
+		
+		AtomicInteger remainingFlatteners = new AtomicInteger(flattenWorkers);
+		
+		AtomicInteger remainingResolvers = new AtomicInteger(resolveWorkers);
+		
+		AtomicInteger remainingPersisters = new AtomicInteger(persistWorkers);
+		
+		try {
+			for (int i = 0; i < readWorkers; i++) {
+				executor.execute(new ReadWorker(definitionQueue, remainingReaders, flattenWorkers));
+			}
+
+			for (int i = 0; i < flattenWorkers; i++) {
+				executor.execute(new FlattenWorker(definitionQueue, flattenedQueue, remainingFlatteners, 
+						resolveWorkers));
+			}
+
+			for (int i = 0; i < resolveWorkers; i++) {
+				executor.execute(new ResolveWorker(flattenedQueue, resolvedQueue, remainingResolvers, 
+						persistWorkers));
+			}
+
+			for (int i = 0; i < persistWorkers; i++) {
+				executor.execute(new PersistWorker(resolvedQueue, remainingPersisters));
+			}
+			
+			completion.await();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			
+			abort(new ImportCancelledException());
+		} finally {
+			int numUnstarted = executor.shutdownNow().size();
+			
+			for (int i = 0; i < numUnstarted; i++) {
+				completion.countDown();
+			}
+		}
+		
+		if (failure != null) {
+			rollBackImport();
+			
+			rethrow(failure);
+		}
+		
+		commitImport();
+		
+		return context.getReport();
+	}
+	
+	private void abort(Throwable ex) {
+		synchronized (this) {
+			if (failure == null) {
+				failure = ex;
+			}
+		}
+		
+		executor.shutdownNow();
+	}
+	
+	private boolean isAborted() {
+		return failure != null;
+	}
+	
+	private void rethrow(Throwable ex) throws SBOLValidationException, IOException, SBOLConversionException {
+		if (ex instanceof SBOLValidationException) {
+			throw (SBOLValidationException) ex;
+		} else if (ex instanceof IOException) {
+			throw (IOException) ex;
+		} else if (ex instanceof SBOLConversionException) {
+			throw (SBOLConversionException) ex;
+		} else if (ex instanceof RuntimeException) {
+			throw (RuntimeException) ex;
+		} else if (ex instanceof Error) {
+			throw (Error) ex;
+		} else {
+			throw new IllegalStateException(ex);
+		}
+	}
+	
+	private void beginImport() {
+		context = new ImportContext(store.getDesignSpaceIDs(), progress);
+		
+		for (Map<String, Object> row : store.getContentHashes()) {
+			context.putContentHash((String) row.get("spaceID"), (String) row.get("contentHash"));
+		}
+
+		for (Map<String, Object> row : store.getPartEntries()) {
+			List<String> partSpaceIDs = new ArrayList<String>();
+
+			if (row.get("spaceIDs") instanceof Collection) {
+				for (Object partSpaceID : (Collection<?>) row.get("spaceIDs")) {
+					partSpaceIDs.add(partSpaceID.toString());
+				}
+			}
+
+			context.loadPartEntry((String) row.get("componentID"), (String) row.get("contentHash"), partSpaceIDs);
+		}
+		
+		libraryStage = store.createLibraryStage();
+	}
+	
+	private void commitImport() {
+		try {
+			progress.beginCommit();
+		} catch (ImportCancelledException ex) {
+			rollBackImport();
+			
+			throw ex;
+		}
+		
+		try {
+			savePartSpaces();
+			
+			store.publishLibraryStage(libraryStage);
+		} catch (RuntimeException ex) {
+			rollBackImport();
+			
+			throw ex;
+		}
+		
+		savePartEntries();
+	}
+	
+	private void rollBackImport() {
+		store.discardLibraryStage(libraryStage);
+	}
+	
+	private void readDocument(Callable<SBOLDocument> source, BlockingQueue<ImportEntry> output) throws Exception {
+		long start = System.nanoTime();
+
+		SBOLDocument sbolDoc;
+
+		try {
+			sbolDoc = source.call();
+		} catch (SBOLValidationException | IOException | SBOLConversionException ex) {
+			sources.clear();
+			
+			abort(ex);
+
+			return;
+		}
+
+		progress.getStage(Stage.PARSE).record(1, sbolDoc.getComponentDefinitions().size(), 
+				System.nanoTime() - start);
+
+		FlattenedDefinitions flattenedDefs = new FlattenedDefinitions();
+
+		for (ComponentDefinition compDef : getDNAComponentDefinitions(sbolDoc)) {
+			output.put(new ImportEntry(compDef, flattenedDefs));
+		}
+	}
+	
+	private void flattenEntry(ImportEntry entry) {
+		long start = System.nanoTime();
+		
+		ComponentDefinition compDef = entry.compDef;
+		
+		entry.compID = compDef.getPersistentIdentity().toString();
+		
+		entry.allRoleTerms = new ArrayList<Set<URI>>();
+		
+		if (compDef.getComponents().size() > 0) {
+			entry.isConstruct = true;
+			
+			List<ComponentDefinition> leafDefs = new ArrayList<ComponentDefinition>();
+
+			List<Boolean> areLeavesForward = new ArrayList<Boolean>();
+
+			flattenRootComponentDefinition(compDef, leafDefs, areLeavesForward, entry.flattenedDefs);
+			
+			entry.allCompIDs = new ArrayList<ArrayList<String>>(leafDefs.size());
+
+			for (int i = 0; i < leafDefs.size(); i++) {
+				ArrayList<String> compIDs = new ArrayList<String>();
+
+				if (areLeavesForward.get(i).booleanValue()) {
+					compIDs.add(leafDefs.get(i).getPersistentIdentity().toString());
+				} else {
+					compIDs.add(DesignSpaceService.REVERSE_PREFIX 
+							+ leafDefs.get(i).getPersistentIdentity().toString());
+				}
+
+				entry.allCompIDs.add(compIDs);
+				
+				entry.allRoleTerms.add(leafDefs.get(i).getRoles());
+			}
+		} else {
+			entry.displayID = compDef.getDisplayId();
+			
+			entry.name = compDef.getName();
+			
+			entry.allRoleTerms.add(compDef.getRoles());
+		}
+		
+		entry.compDef = null;
+		
+		entry.flattenedDefs = null;
+		
+		progress.getStage(Stage.FLATTEN).record(1, entry.allRoleTerms.size(), System.nanoTime() - start);
+	}
+	
+	private void resolveEntry(ImportEntry entry) {
+		long start = System.nanoTime();
+		
+		if (entry.isConstruct) {
+			entry.allCompRoles = new ArrayList<ArrayList<String>>(entry.allRoleTerms.size());
+			
+			for (Set<URI> roleTerms : entry.allRoleTerms) {
+				entry.allCompRoles.add(convertSOTermsToNames(roleTerms));
+			}
+			
+			if (namespace.equals(DesignSpaceService.DEFAULT_NAMESPACE)) {
+				entry.contentHash = ContentHash.of(entry.allCompIDs, entry.allCompRoles);
+			} else {
+				entry.contentHash = ContentHash.of(entry.allCompIDs, entry.allCompRoles, namespace);
+			}
+		} else {
+			entry.compRoles = convertSOTermsToNames(entry.allRoleTerms.get(0));
+			
+			entry.partSpaceIDs = new ArrayList<String>();
+
+			if (entry.displayID != null) {
+				entry.partSpaceIDs.add(entry.displayID);
+			}
+
+			if (entry.name != null) {
+				entry.partSpaceIDs.add(entry.name);
+			}
+
+			entry.partSpaceIDs.addAll(entry.compRoles);
+			
+			entry.contentHash = ContentHash.of(entry.compID, entry.partSpaceIDs, entry.compRoles);
+		}
+		
+		entry.allRoleTerms = null;
+		
+		progress.getStage(Stage.RESOLVE).record(1, entry.isConstruct ? entry.allCompRoles.size() : 1, 
+				System.nanoTime() - start);
+	}
+	
+	private void persistConstructs(List<ImportEntry> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		
+		ArrayList<String> outputSpaceIDs = new ArrayList<String>();
+		
+		ArrayList<ArrayList<ArrayList<String>>> allCompIDs = new ArrayList<ArrayList<ArrayList<String>>>();
+		
+		ArrayList<ArrayList<ArrayList<String>>> allCompRoles = new ArrayList<ArrayList<ArrayList<String>>>();
+		
+		ArrayList<String> contentHashes = new ArrayList<String>();
+		
+		int numRows = 0;
+		
+		synchronized (context) {
+			for (ImportEntry entry : batch) {
+				if (entry.contentHash.equals(context.getContentHash(entry.compID))) {
+					context.getReport().addSkippedConstruct();
+				} else {
+					if (!context.hasSpaceID(entry.compID)) {
+						context.addSpaceID(entry.compID);
+
+						context.getReport().addCreatedConstruct();
+					} else {
+						context.getReport().addUpdatedConstruct();
+					}
+					
+					context.putContentHash(entry.compID, entry.contentHash);
+					
+					outputSpaceIDs.add(entry.compID);
+					
+					allCompIDs.add(entry.allCompIDs);
+					
+					allCompRoles.add(entry.allCompRoles);
+					
+					contentHashes.add(entry.contentHash);
+					
+					numRows += entry.allCompIDs.size();
+				}
+			}
+		}
+		
+		batch.clear();
+		
+		if (!outputSpaceIDs.isEmpty()) {
+			store.stageDesignSpaces(libraryStage, outputSpaceIDs, allCompIDs, allCompRoles, contentHashes, namespace);
+			
+			progress.getStage(Stage.WRITE_CONSTRUCTS).record(outputSpaceIDs.size(), numRows, 
+					System.nanoTime() - start);
+		}
+	}
+	
+	private void stagePart(ImportEntry entry) {
+		synchronized (context) {
+			if (entry.contentHash.equals(context.getPartHash(entry.compID))) {
+				context.getReport().addSkippedPart();
+			} else {
+				PartSpaceLabels partLabels = context.getPartLabels();
+
+				if (context.getPartHash(entry.compID) != null) {
+					for (String partSpaceID : context.getPartSpaceIDs(entry.compID)) {
+						partLabels.removeComponent(partSpaceID, entry.compID);
+					}
+
+					context.getReport().addUpdatedPart();
+				} else {
+					context.getReport().addCreatedPart();
+				}
+
+				for (String partSpaceID : entry.partSpaceIDs) {
+					partLabels.addComponent(partSpaceID, entry.compID, entry.compRoles);
+
+					context.addSpaceID(partSpaceID);
+				}
+
+				context.putPartEntry(entry.compID, entry.contentHash, entry.partSpaceIDs);
+			}
+		}
+	}
+	
+	private void savePartSpaces() {
+		PartSpaceLabels partLabels = context.getPartLabels();
+
+		Set<String> existingSpaceIDs = context.getExistingSpaceIDs();
+
+		ImportStage writeStage = progress.getStage(Stage.WRITE_PARTS);
+
+		List<String> existingPartIDs = new ArrayList<String>();
+
+		for (String partID : partLabels.getPartIDs()) {
+			if (existingSpaceIDs.contains(partID)) {
+				existingPartIDs.add(partID);
+			}
+		}
+
+		Map<String, Map<String, Object>> partIDToComponents = new HashMap<String, Map<String, Object>>();
+
+		if (!existingPartIDs.isEmpty()) {
+			for (Map<String, Object> row : store.getComponents(existingPartIDs)) {
+				partIDToComponents.put((String) row.get("spaceID"), row);
+			}
+		}
+
+		for (String partID : partLabels.getPartIDs()) {
+			long start = System.nanoTime();
+
+			Set<String> compIDs = new LinkedHashSet<String>();
+
+			Set<String> compRoles = new LinkedHashSet<String>();
+
+			Map<String, Object> components = partIDToComponents.get(partID);
+
+			if (components != null) {
+				addLabels(components.get("componentIDs"), compIDs);
+
+				addLabels(components.get("componentRoles"), compRoles);
+			}
+
+			compIDs.removeAll(partLabels.getRemovedComponentIDs(partID));
+
+			compIDs.addAll(partLabels.getComponentIDs(partID));
+
+			compRoles.addAll(partLabels.getComponentRoles(partID));
+
+			if (compIDs.isEmpty()) {
+				if (existingSpaceIDs.contains(partID)) {
+					store.stageDeletion(libraryStage, partID);
+				}
+			} else {
+				ArrayList<ArrayList<String>> allCompIDs = new ArrayList<ArrayList<String>>();
+
+				allCompIDs.add(new ArrayList<String>(compIDs));
+
+				ArrayList<ArrayList<String>> allCompRoles = new ArrayList<ArrayList<String>>();
+
+				allCompRoles.add(new ArrayList<String>(compRoles));
+
+				store.stageDesignSpace(libraryStage, partID, allCompIDs, allCompRoles);
+			}
+
+			writeStage.record(1, compIDs.size(), System.nanoTime() - start);
+		}
+	}
+	
+	private static void addLabels(Object labels, Set<String> labelSet) {
+		if (labels instanceof Collection) {
+			for (Object label : (Collection<?>) labels) {
+				labelSet.add((String) label);
+			}
+		}
+	}
+	
+	private void savePartEntries() {
+		if (!context.getChangedPartIDs().isEmpty()) {
+			ArrayList<String> compIDs = new ArrayList<String>(context.getChangedPartIDs());
+
+			ArrayList<String> partHashes = new ArrayList<String>(compIDs.size());
+
+			ArrayList<ArrayList<String>> allPartSpaceIDs = new ArrayList<ArrayList<String>>(compIDs.size());
+
+			for (String compID : compIDs) {
+				partHashes.add(context.getPartHash(compID));
+
+				allPartSpaceIDs.add(new ArrayList<String>(context.getPartSpaceIDs(compID)));
+			}
+
+			store.savePartEntries(compIDs, partHashes, allPartSpaceIDs);
+		}
+	}
+	
+	private void flattenComponentDefinition(ComponentDefinition compDef, List<ComponentDefinition> leafDefs,
+			List<Boolean> areLeavesForward, boolean isForward, FlattenedDefinitions flattenedDefs) {
+		String defID = compDef.getIdentity().toString();
+
+		if (!flattenedDefs.contains(defID)) {
+			List<ComponentDefinition> defLeaves = new ArrayList<ComponentDefinition>();
+
+			List<Boolean> areDefLeavesForward = new ArrayList<Boolean>();
+
+			flattenSubComponents(compDef, defLeaves, areDefLeavesForward, flattenedDefs);
+
+			flattenedDefs.put(defID, defLeaves, areDefLeavesForward);
+		}
+
+		leafDefs.addAll(flattenedDefs.getLeafDefinitions(defID));
+
+		for (Boolean isLeafForward : flattenedDefs.getLeafOrientations(defID)) {
+			areLeavesForward.add(new Boolean(isLeafForward.booleanValue() == isForward));
+		}
+	}
+
+	private void flattenSubComponents(ComponentDefinition compDef, List<ComponentDefinition> leafDefs,
+			List<Boolean> areLeavesForward, FlattenedDefinitions flattenedDefs) {
+		Set<Component> subComps = compDef.getComponents();
+
+		if (subComps.size() == 0) {
+			leafDefs.add(compDef);
+
+			areLeavesForward.add(Boolean.TRUE);
+		} else {
+			Set<SequenceAnnotation> seqAnnos = compDef.getSequenceAnnotations();
+
+			HashMap<String, SequenceAnnotation> compIDToSeqAnno = new HashMap<String, SequenceAnnotation>();
+
+			final HashMap<String, Integer> compIDToStart = new HashMap<String, Integer>();
+
+			for (SequenceAnnotation seqAnno : seqAnnos) {
+				if (seqAnno.getComponentURI() != null) {
+					int start = getStartOfSequenceAnnotation(seqAnno);
+
+					if (start > 0) {
+						compIDToSeqAnno.put(seqAnno.getComponentURI().toString(), seqAnno);
+
+						compIDToStart.put(seqAnno.getComponentURI().toString(), new Integer(start));
+					}
+				}
+			}
+
+			List<Component> sortedSubComps = new ArrayList<Component>(subComps.size());
+
+			for (Component subComp : subComps) {
+				if (compIDToSeqAnno.containsKey(subComp.getIdentity().toString())) {
+					sortedSubComps.add(subComp);
+				}
+			}
+
+			Collections.sort(sortedSubComps, new Comparator<Component>() {
+				@Override
+				public int compare(Component subComp1, Component subComp2) {
+					return compIDToStart.get(subComp1.getIdentity().toString())
+							.compareTo(compIDToStart.get(subComp2.getIdentity().toString()));
+				}
+			});
+
+			for (Component subComp : sortedSubComps) {
+				SequenceAnnotation seqAnno = compIDToSeqAnno.get(subComp.getIdentity().toString());
+
+				flattenComponentDefinition(subComp.getDefinition(), leafDefs, areLeavesForward, 
+						isSequenceAnnotationForward(seqAnno), flattenedDefs);
+			}
+		}
+	}
+
+	private void flattenRootComponentDefinition(ComponentDefinition rootDef, List<ComponentDefinition> leafDefs,
+			List<Boolean> areLeavesForward, FlattenedDefinitions flattenedDefs) {
+		flattenComponentDefinition(rootDef, leafDefs, areLeavesForward, true, flattenedDefs);
+	}
+	
+	private Set<ComponentDefinition> getDNAComponentDefinitions(SBOLDocument sbolDoc) {
+		Set<ComponentDefinition> dnaCompDefs = new HashSet<ComponentDefinition>();
+
+		for (ComponentDefinition compDef : sbolDoc.getComponentDefinitions()) {
+			if (isDNAComponentDefinition(compDef)) {
+				dnaCompDefs.add(compDef);
+			}
+		}
+		return dnaCompDefs;
+	}
+
+	private boolean isDNAComponentDefinition(ComponentDefinition compDef) {
+		Set<URI> compTypes = compDef.getTypes();
+		if (compTypes.size() == 0) {
+			return false;
+		} else if (compTypes.contains(ComponentDefinition.DNA)) {
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private ArrayList<String> convertSOTermsToNames(Set<URI> soTerms) {
+		ArrayList<String> roleNames= new ArrayList<String>();
+
+		if (soTerms.size() == 0) {
+			roleNames.add("sequence_feature");
+		} else {
+			for (URI soIdentifier : soTerms) {
+				roleNames.add(soCache.getName(soIdentifier));
+			}
+		}
+
+		return roleNames;
+	}
+
+	private int getStartOfSequenceAnnotation(SequenceAnnotation seqAnno) {
+		int start = -1;
+
+		for (Location location : seqAnno.getLocations()) {
+			if (location instanceof Range) {
+				Range range = (Range) location;
+
+				if (start < 0 || range.getStart() < start) {
+					start = range.getStart();
+				}
+			} else if (location instanceof Cut) {
+				Cut cut = (Cut) location;
+
+				if (start < 0 || cut.getAt() < start) {
+					start = cut.getAt();
+				}
+			}
+		}
+
+		return start;
+	}
+
+	private boolean isSequenceAnnotationForward(SequenceAnnotation seqAnno) {
+		for (Location location : seqAnno.getLocations()) {
+			if (location.getOrientation().equals(OrientationType.REVERSECOMPLEMENT)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+	
+	/**
+	 * Takes entries from its input queue until it reaches the end marker. When the last worker of a stage 
+	 * finishes, it passes one end marker to each worker of the next stage.
+	 */
+	private abstract class StageWorker implements Runnable {
+		BlockingQueue<ImportEntry> input;
+		
+		BlockingQueue<ImportEntry> output;
+		
+		AtomicInteger remainingWorkers;
+		
+		int numConsumers;
+		
+		StageWorker(BlockingQueue<ImportEntry> input, BlockingQueue<ImportEntry> output, 
+				AtomicInteger remainingWorkers, int numConsumers) {
+			this.input = input;
+			
+			this.output = output;
+			
+			this.remainingWorkers = remainingWorkers;
+			
+			this.numConsumers = numConsumers;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				work();
+				
+				if (remainingWorkers.decrementAndGet() == 0 && output != null) {
+					for (int i = 0; i < numConsumers; i++) {
+						output.put(END);
+					}
+				}
+			} catch (InterruptedException ex) {
+				// The pipeline was aborted by another worker
+			} catch (Throwable ex) {
+				abort(ex);
+			} finally {
+				completion.countDown();
+			}
+		}
+		
+		void work() throws Exception {
+			ImportEntry entry = input.take();
+			
+			while (entry != END && !isAborted()) {
+				progress.checkCancelled();
+				
+				process(entry);
+				
+				entry = input.take();
+			}
+			
+			finish();
+		}
+		
+		abstract void process(ImportEntry entry) throws Exception;
+		
+		void finish() {
+			
+		}
+	}
+	
+	private class ReadWorker extends StageWorker {
+		
+		ReadWorker(BlockingQueue<ImportEntry> output, AtomicInteger remainingWorkers, int numConsumers) {
+			super(null, output, remainingWorkers, numConsumers);
+		}
+		
+		@Override
+		void work() throws Exception {
+			Callable<SBOLDocument> source = sources.poll();
+			
+			while (source != null && !isAborted()) {
+				progress.checkCancelled();
+				
+				readDocument(source, output);
+				
+				source = sources.poll();
+			}
+		}
+		
+		@Override
+		void process(ImportEntry entry) {
+			
+		}
+	}
+	
+	private class FlattenWorker extends StageWorker {
+		
+		FlattenWorker(BlockingQueue<ImportEntry> input, BlockingQueue<ImportEntry> output, 
+				AtomicInteger remainingWorkers, int numConsumers) {
+			super(input, output, remainingWorkers, numConsumers);
+		}
+		
+		@Override
+		void process(ImportEntry entry) throws InterruptedException {
+			flattenEntry(entry);
+			
+			output.put(entry);
+		}
+	}
+	
+	private class ResolveWorker extends StageWorker {
+		
+		ResolveWorker(BlockingQueue<ImportEntry> input, BlockingQueue<ImportEntry> output, 
+				AtomicInteger remainingWorkers, int numConsumers) {
+			super(input, output, remainingWorkers, numConsumers);
+		}
+		
+		@Override
+		void process(ImportEntry entry) throws InterruptedException {
+			resolveEntry(entry);
+			
+			output.put(entry);
+		}
+	}
+	
+	private class PersistWorker extends StageWorker {
+		List<ImportEntry> batch;
+		
+		PersistWorker(BlockingQueue<ImportEntry> input, AtomicInteger remainingWorkers) {
+			super(input, null, remainingWorkers, 0);
+			
+			batch = new ArrayList<ImportEntry>(batchSize);
+		}
+		
+		@Override
+		void process(ImportEntry entry) {
+			if (entry.isConstruct) {
+				batch.add(entry);
+				
+				if (batch.size() >= batchSize) {
+					persistConstructs(batch);
+				}
+			} else {
+				stagePart(entry);
+			}
+		}
+		
+		@Override
+		void finish() {
+			if (!isAborted()) {
+				persistConstructs(batch);
+			}
+		}
+	}
+	
+	/**
+	 * A DNA ComponentDefinition on its way through the pipeline. Each stage fills in the fields it produces 
+	 * and releases the ones it no longer needs.
+	 */
+	private static class ImportEntry {
+		ComponentDefinition compDef;
+		
+		FlattenedDefinitions flattenedDefs;
+		
+		String compID;
+		
+		boolean isConstruct;
+		
+		String displayID;
+		
+		String name;
+		
+		List<Set<URI>> allRoleTerms;
+		
+		ArrayList<ArrayList<String>> allCompIDs;
+		
+		ArrayList<ArrayList<String>> allCompRoles;
+		
+		ArrayList<String> compRoles;
+		
+		List<String> partSpaceIDs;
+		
+		String contentHash;
+		
+		ImportEntry(ComponentDefinition compDef, FlattenedDefinitions flattenedDefs) {
+			this.compDef = compDef;
+			
+			this.flattenedDefs = flattenedDefs;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+import poolDesigner.spring.data.neo4j.exception.ImportCancelledException;
+
+/**
+ * Tracks the stages of an SBOL import and carries cancellation requests into it. Cancellation is honoured between
+ * definitions up to the point where the import begins writing part spaces; from then on the import commits.
+ */
+public class ImportProgress {
+	EnumMap<Stage, ImportStage> stages;
+	
+	boolean isCancelled;
+	
+	boolean isCommitting;
+	
+	public ImportProgress() {
+		stages = new EnumMap<Stage, ImportStage>(Stage.class);
+		
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new ImportStage(stage.getValue()));
+		}
+	}
+	
+	public ImportStage getStage(Stage stage) {
+		return stages.get(stage);
+	}
+	
+	public List<ImportStage> getStages() {
+		return new ArrayList<ImportStage>(stages.values());
+	}
+	
+	public synchronized boolean cancel() {
+		if (!isCommitting) {
+			isCancelled = true;
+		}
+		
+		return isCancelled;
+	}
+	
+	public synchronized boolean isCancelled() {
+		return isCancelled;
+	}
+	
+	public synchronized void checkCancelled() {
+		if (isCancelled) {
+			throw new ImportCancelledException();
+		}
+	}
+	
+	public synchronized void beginCommit() {
+		checkCancelled();
+		
+		isCommitting = true;
+	}
+	
+	public enum Stage {
+		PARSE ("parse"),
+		FLATTEN ("flatten"),
+		RESOLVE ("resolve"),
+		WRITE_CONSTRUCTS ("write-constructs"),
+		WRITE_PARTS ("write-parts");
+		
+		private final String value;
+		
+		Stage(String value) {
+			this.value = value;
+		}
+		
+		public String getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,108 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts of the constructs and parts that an SBOL import created, updated or skipped because their content
+ * hashes were unchanged.
+ */
+public class ImportReport {
+	AtomicInteger constructsCreated;
+	
+	AtomicInteger constructsUpdated;
+	
+	AtomicInteger constructsSkipped;
+	
+	AtomicInteger partsCreated;
+	
+	AtomicInteger partsUpdated;
+	
+	AtomicInteger partsSkipped;
+	
+	public ImportReport() {
+		constructsCreated = new AtomicInteger();
+		
+		constructsUpdated = new AtomicInteger();
+		
+		constructsSkipped = new AtomicInteger();
+		
+		partsCreated = new AtomicInteger();
+		
+		partsUpdated = new AtomicInteger();
+		
+		partsSkipped = new AtomicInteger();
+	}
+	
+	public void addCreatedConstruct() {
+		constructsCreated.incrementAndGet();
+	}
+	
+	public void addUpdatedConstruct() {
+		constructsUpdated.incrementAndGet();
+	}
+	
+	public void addSkippedConstruct() {
+		constructsSkipped.incrementAndGet();
+	}
+	
+	public void addCreatedPart() {
+		partsCreated.incrementAndGet();
+	}
+	
+	public void addUpdatedPart() {
+		partsUpdated.incrementAndGet();
+	}
+	
+	public void addSkippedPart() {
+		partsSkipped.incrementAndGet();
+	}
+	
+	public int getConstructsCreated() {
+		return constructsCreated.get();
+	}
+	
+	public int getConstructsUpdated() {
+		return constructsUpdated.get();
+	}
+	
+	public int getConstructsSkipped() {
+		return constructsSkipped.get();
+	}
+	
+	public int getPartsCreated() {
+		return partsCreated.get();
+	}
+	
+	public int getPartsUpdated() {
+		return partsUpdated.get();
+	}
+	
+	public int getPartsSkipped() {
+		return partsSkipped.get();
+	}
+}
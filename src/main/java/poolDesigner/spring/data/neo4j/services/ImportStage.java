@@ -0,0 +1,95 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters for one stage of an SBOL import. Items are the units a stage works on (documents or definitions) and 
+ * rows are the labels or edges it produces, so that rates can be compared across stages. Time is accumulated only 
+ * while the stage is busy, since the stages of an import interleave.
+ */
+public class ImportStage {
+	String name;
+	
+	AtomicLong items;
+	
+	AtomicLong rows;
+	
+	AtomicLong busyNanos;
+	
+	public ImportStage(String name) {
+		this.name = name;
+		
+		items = new AtomicLong();
+		
+		rows = new AtomicLong();
+		
+		busyNanos = new AtomicLong();
+	}
+	
+	public void record(long numItems, long numRows, long nanos) {
+		items.addAndGet(numItems);
+		
+		rows.addAndGet(numRows);
+		
+		busyNanos.addAndGet(nanos);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public long getItems() {
+		return items.get();
+	}
+	
+	public long getRows() {
+		return rows.get();
+	}
+	
+	public long getBusyMillis() {
+		return busyNanos.get()/1000000L;
+	}
+	
+	public double getItemsPerSecond() {
+		return perSecond(items.get());
+	}
+	
+	public double getRowsPerSecond() {
+		return perSecond(rows.get());
+	}
+	
+	private double perSecond(long count) {
+		long nanos = busyNanos.get();
+		
+		if (nanos > 0) {
+			return count*1000000000.0/nanos;
+		} else {
+			return 0.0;
+		}
+	}
+}
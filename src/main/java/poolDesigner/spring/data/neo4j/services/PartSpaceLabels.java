@@ -0,0 +1,117 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Accumulates the component IDs and roles that an import adds to each part space (display ID, name or role)
+ * so that every part space is written once per import instead of being reloaded and resaved for each part.
+ */
+public class PartSpaceLabels {
+	LinkedHashMap<String, Set<String>> partIDToCompIDs;
+	
+	LinkedHashMap<String, Set<String>> partIDToCompRoles;
+	
+	LinkedHashMap<String, Set<String>> partIDToRemovedCompIDs;
+	
+	Set<String> partIDs;
+	
+	public PartSpaceLabels() {
+		partIDToCompIDs = new LinkedHashMap<String, Set<String>>();
+		
+		partIDToCompRoles = new LinkedHashMap<String, Set<String>>();
+		
+		partIDToRemovedCompIDs = new LinkedHashMap<String, Set<String>>();
+		
+		partIDs = new LinkedHashSet<String>();
+	}
+	
+	public void addComponent(String partID, String compID, List<String> compRoles) {
+		if (!partIDToCompIDs.containsKey(partID)) {
+			partIDToCompIDs.put(partID, new LinkedHashSet<String>());
+			
+			partIDToCompRoles.put(partID, new LinkedHashSet<String>());
+		}
+		
+		partIDToCompIDs.get(partID).add(compID);
+		
+		partIDToCompRoles.get(partID).addAll(compRoles);
+		
+		partIDs.add(partID);
+	}
+	
+	/**
+	 * Records that a changed part no longer belongs to a part space. Removals are applied before additions, 
+	 * so a part that is removed and added again in the same import stays in the space.
+	 */
+	public void removeComponent(String partID, String compID) {
+		if (!partIDToRemovedCompIDs.containsKey(partID)) {
+			partIDToRemovedCompIDs.put(partID, new HashSet<String>());
+		}
+		
+		partIDToRemovedCompIDs.get(partID).add(compID);
+		
+		partIDs.add(partID);
+	}
+	
+	public Set<String> getPartIDs() {
+		return partIDs;
+	}
+	
+	public Set<String> getComponentIDs(String partID) {
+		if (partIDToCompIDs.containsKey(partID)) {
+			return partIDToCompIDs.get(partID);
+		} else {
+			return Collections.emptySet();
+		}
+	}
+	
+	public Set<String> getComponentRoles(String partID) {
+		if (partIDToCompRoles.containsKey(partID)) {
+			return partIDToCompRoles.get(partID);
+		} else {
+			return Collections.emptySet();
+		}
+	}
+	
+	public Set<String> getRemovedComponentIDs(String partID) {
+		if (partIDToRemovedCompIDs.containsKey(partID)) {
+			return partIDToRemovedCompIDs.get(partID);
+		} else {
+			return Collections.emptySet();
+		}
+	}
+	
+	public boolean isEmpty() {
+		return partIDs.isEmpty();
+	}
+}
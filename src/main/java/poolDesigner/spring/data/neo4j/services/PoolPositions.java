@@ -0,0 +1,134 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Stack;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+
+/**
+ * Iterates over the positions of a pool space, that is its edges with component IDs, in the order in which they 
+ * are listed in the string form of a pool. Nodes are visited level by level from the start nodes, and the 
+ * traversal advances lazily, so a pool can be written position by position as it is traversed.
+ */
+class PoolPositions implements Iterable<Edge> {
+	
+	private final DesignSpace poolSpace;
+	
+	PoolPositions(DesignSpace poolSpace) {
+		this.poolSpace = poolSpace;
+	}
+	
+	@Override
+	public Iterator<Edge> iterator() {
+		return new PositionIterator(poolSpace.getStartNodes());
+	}
+	
+	private static class PositionIterator implements Iterator<Edge> {
+		
+		private final Set<String> visitedNodeIDs = new HashSet<String>();
+		
+		private final Stack<Node> nodeStack = new Stack<Node>();
+		
+		private final Set<Node> nextNodes = new HashSet<Node>();
+		
+		private Iterator<Edge> edgeIter = Collections.<Edge>emptyList().iterator();
+		
+		private Edge nextPosition;
+		
+		PositionIterator(Set<Node> startNodes) {
+			nextNodes.addAll(startNodes);
+			
+			advance();
+		}
+		
+		@Override
+		public boolean hasNext() {
+			return nextPosition != null;
+		}
+		
+		@Override
+		public Edge next() {
+			if (nextPosition == null) {
+				throw new NoSuchElementException();
+			}
+			
+			Edge position = nextPosition;
+			
+			advance();
+			
+			return position;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		private void advance() {
+			while (true) {
+				while (edgeIter.hasNext()) {
+					Edge edge = edgeIter.next();
+					
+					if (!visitedNodeIDs.contains(edge.getHead().getNodeID())) {
+						nextNodes.add(edge.getHead());
+					}
+					
+					if (edge.hasComponentIDs()) {
+						nextPosition = edge;
+						
+						return;
+					}
+				}
+				
+				if (!nodeStack.isEmpty()) {
+					Node node = nodeStack.pop();
+					
+					visitedNodeIDs.add(node.getNodeID());
+					
+					if (node.hasEdges()) {
+						edgeIter = node.getEdges().iterator();
+					}
+				} else if (nextNodes.size() > 0) {
+					nodeStack.addAll(nextNodes);
+					
+					nextNodes.clear();
+				} else {
+					nextPosition = null;
+					
+					return;
+				}
+			}
+		}
+	}
+}
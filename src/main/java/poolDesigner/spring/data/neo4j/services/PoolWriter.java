@@ -0,0 +1,129 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+
+/**
+ * Writes merged pool spaces straight to a stream as they are traversed, one position at a time, in the order of 
+ * PoolPositions, so no string or tree of the result is built first.
+ * 
+ * The structured form is JSON in which each pool is an array of positions, and each position is an object with 
+ * its componentIDs and componentRoles. The compact form is CBOR in which each position is an array of component 
+ * IDs only, written through a StringTable, so that an ID shared by many positions or pools is sent once per 
+ * response.
+ */
+class PoolWriter {
+	private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	
+	private static final JsonFactory CBOR_FACTORY = new CBORFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+	
+	private final JsonGenerator generator;
+	
+	private final StringTable idTable;
+	
+	PoolWriter(OutputStream out, boolean isCompact) throws IOException {
+		if (isCompact) {
+			generator = CBOR_FACTORY.createGenerator(out);
+			
+			idTable = new StringTable();
+		} else {
+			generator = JSON_FACTORY.createGenerator(out);
+			
+			idTable = null;
+		}
+	}
+	
+	void write(List<DesignSpace> poolSpaces) throws IOException {
+		generator.writeStartObject();
+		
+		generator.writeArrayFieldStart("pools");
+		
+		for (DesignSpace poolSpace : poolSpaces) {
+			generator.writeStartArray();
+			
+			for (Edge position : new PoolPositions(poolSpace)) {
+				if (idTable != null) {
+					writeCompactPosition(position);
+				} else {
+					writePosition(position);
+				}
+			}
+			
+			generator.writeEndArray();
+		}
+		
+		generator.writeEndArray();
+		
+		generator.writeEndObject();
+		
+		generator.close();
+	}
+	
+	private void writePosition(Edge position) throws IOException {
+		generator.writeStartObject();
+		
+		writeLabels("componentIDs", position.getComponentIDs());
+		
+		if (position.hasComponentRoles()) {
+			writeLabels("componentRoles", position.getComponentRoles());
+		} else {
+			writeLabels("componentRoles", Collections.<String>emptyList());
+		}
+		
+		generator.writeEndObject();
+	}
+	
+	private void writeCompactPosition(Edge position) throws IOException {
+		generator.writeStartArray();
+		
+		for (String compID : position.getComponentIDs()) {
+			idTable.write(generator, compID);
+		}
+		
+		generator.writeEndArray();
+	}
+	
+	private void writeLabels(String fieldName, List<String> labels) throws IOException {
+		generator.writeArrayFieldStart(fieldName);
+		
+		for (String label : labels) {
+			generator.writeString(label);
+		}
+		
+		generator.writeEndArray();
+	}
+}
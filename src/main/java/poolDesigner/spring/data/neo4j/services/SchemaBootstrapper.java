@@ -0,0 +1,218 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.stereotype.Component;
+
+import poolDesigner.spring.data.neo4j.repositories.DesignSpaceRepository;
+import poolDesigner.spring.data.neo4j.store.Neo4jStoreCondition;
+
+/**
+ * Creates the indexes and uniqueness constraints that the repository queries anchor on once the application
+ * context has started. Creating an index or constraint that already exists is a no-op in Neo4j, so this is safe
+ * to run on every start. A constraint cannot be created while duplicate design space IDs exist; that failure is
+ * logged and the application starts without the constraint. Spaces stored before nodeCount, isComposite and the 
+ * component sets were maintained on write are given those properties here, and constructs imported before library
+ * namespaces are added to the default namespace. Library stages belong to the process that created them, so 
+ * spaces staged by an import that never published are discarded here.
+ */
+@Component
+@Conditional(Neo4jStoreCondition.class)
+public class SchemaBootstrapper implements ApplicationListener<ContextRefreshedEvent> {
+	
+	private static final Logger LOG = LoggerFactory.getLogger(SchemaBootstrapper.class);
+	
+	private static final int BACKFILL_BATCH_SIZE = 10000;
+	
+	@Autowired DesignSpaceRepository designSpaceRepository;
+	
+	boolean isBootstrapped;
+	
+	@Override
+	public synchronized void onApplicationEvent(ContextRefreshedEvent event) {
+		if (!isBootstrapped) {
+			isBootstrapped = true;
+			
+			createSchema("DesignSpace.spaceID uniqueness constraint", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createSpaceIDConstraint();
+				}
+			});
+			
+			createSchema("PartEntry.componentID uniqueness constraint", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createPartEntryConstraint();
+				}
+			});
+			
+			createSchema("Node.nodeID index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createNodeIDIndex();
+				}
+			});
+			
+			createSchema("DesignSpace.isComposite index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createCompositeIndex();
+				}
+			});
+			
+			createSchema("DesignSpace.namespace index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createNamespaceIndex();
+				}
+			});
+			
+			createSchema("Library.name uniqueness constraint", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createLibraryConstraint();
+				}
+			});
+			
+			createSchema("DeletedSpace.spaceID index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createDeletedSpaceIDIndex();
+				}
+			});
+			
+			createSchema("StagedSpace.spaceID index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createStagedSpaceIDIndex();
+				}
+			});
+			
+			createSchema("StagedSpace.stage index", new Runnable() {
+				@Override
+				public void run() {
+					designSpaceRepository.createStageIndex();
+				}
+			});
+			
+			createSchema("no spaces left staged by unpublished imports", new Runnable() {
+				@Override
+				public void run() {
+					long numSpaces = 0;
+					
+					long numBatchSpaces;
+					
+					do {
+						numBatchSpaces = designSpaceRepository.discardStagedSpaces(BACKFILL_BATCH_SIZE);
+						
+						numSpaces += numBatchSpaces;
+					} while (numBatchSpaces > 0);
+					
+					if (numSpaces > 0) {
+						LOG.info("Discarded {} design spaces staged by unpublished imports", numSpaces);
+					}
+				}
+			});
+			
+			createSchema("DesignSpace.nodeCount on spaces created before it was maintained", new Runnable() {
+				@Override
+				public void run() {
+					long numSpaces = 0;
+					
+					long numBatchSpaces;
+					
+					do {
+						numBatchSpaces = designSpaceRepository.setMissingNodeCounts(BACKFILL_BATCH_SIZE);
+						
+						numSpaces += numBatchSpaces;
+					} while (numBatchSpaces > 0);
+					
+					if (numSpaces > 0) {
+						LOG.info("Counted the nodes of {} design spaces", numSpaces);
+					}
+				}
+			});
+			
+			createSchema("DesignSpace.namespace on constructs imported before namespaces", new Runnable() {
+				@Override
+				public void run() {
+					long numSpaces = 0;
+					
+					long numBatchSpaces;
+					
+					do {
+						numBatchSpaces = designSpaceRepository.setMissingNamespaces(DesignSpaceService.DEFAULT_NAMESPACE, 
+								BACKFILL_BATCH_SIZE);
+						
+						numSpaces += numBatchSpaces;
+					} while (numBatchSpaces > 0);
+					
+					if (numSpaces > 0) {
+						LOG.info("Added {} constructs to the {} namespace", numSpaces, DesignSpaceService.DEFAULT_NAMESPACE);
+					}
+				}
+			});
+			
+			createSchema("DesignSpace component sets on spaces created before they were maintained", new Runnable() {
+				@Override
+				public void run() {
+					long numSpaces = 0;
+					
+					long numBatchSpaces;
+					
+					do {
+						numBatchSpaces = designSpaceRepository.setMissingComponents(BACKFILL_BATCH_SIZE);
+						
+						numSpaces += numBatchSpaces;
+					} while (numBatchSpaces > 0);
+					
+					if (numSpaces > 0) {
+						LOG.info("Collected the component sets of {} design spaces", numSpaces);
+					}
+				}
+			});
+		}
+	}
+	
+	private void createSchema(String description, Runnable creation) {
+		long start = System.nanoTime();
+		
+		try {
+			creation.run();
+			
+			LOG.info("Ensured {} in {} ms", description, (System.nanoTime() - start)/1000000);
+		} catch (RuntimeException ex) {
+			LOG.warn("Failed to create " + description, ex);
+		}
+	}
+}
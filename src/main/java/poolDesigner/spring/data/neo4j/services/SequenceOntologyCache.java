@@ -0,0 +1,92 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.sbolstandard.core2.SequenceOntology;
+import org.springframework.stereotype.Component;
+
+/**
+ * Process-wide cache from Sequence Ontology terms and role abbreviations to SO names. The ontology itself is only
+ * walked on a cache miss, so resolving the roles of an imported part or a pool specification is a single
+ * hash lookup once the common roles have been warmed up.
+ */
+@Component
+public class SequenceOntologyCache {
+	
+	private final SequenceOntology so = new SequenceOntology();
+	
+	private final ConcurrentHashMap<URI, String> termToName = new ConcurrentHashMap<URI, String>();
+	
+	private final ConcurrentHashMap<String, String> abbreviationToName = new ConcurrentHashMap<String, String>();
+	
+	@PostConstruct
+	public void warmUp() {
+		abbreviationToName.put("RBS", "ribosome_entry_site");
+		abbreviationToName.put("scar", "restriction_enzyme_assembly_scar");
+		
+		getName(SequenceOntology.PROMOTER);
+		getName(SequenceOntology.type("SO:0000374"));
+		getName(SequenceOntology.INSULATOR);
+		getName(SequenceOntology.RIBOSOME_ENTRY_SITE);
+		getName(SequenceOntology.CDS);
+		getName(SequenceOntology.TERMINATOR);
+		getName(SequenceOntology.type("SO:0001953"));
+		getName(SequenceOntology.RESTRICTION_ENZYME_RECOGNITION_SITE);
+		getName(SequenceOntology.PRIMER_BINDING_SITE);
+		getName(SequenceOntology.type("SO:0000804"));
+	}
+	
+	public String getName(URI soTerm) {
+		String name = termToName.get(soTerm);
+		
+		if (name == null) {
+			synchronized (so) {
+				name = so.getName(soTerm);
+			}
+			
+			if (name != null) {
+				termToName.putIfAbsent(soTerm, name);
+			}
+		}
+		
+		return name;
+	}
+	
+	public String getNameOfAbbreviation(String abbreviation) {
+		String name = abbreviationToName.get(abbreviation);
+		
+		if (name == null) {
+			return abbreviation;
+		} else {
+			return name;
+		}
+	}
+}
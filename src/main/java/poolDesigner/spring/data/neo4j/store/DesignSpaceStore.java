@@ -0,0 +1,197 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+
+/**
+ * Storage for design spaces and the import bookkeeping kept alongside them. DesignSpaceService and the SBOL
+ * import only reach the library through this interface, so the backend is chosen by profile: Neo4j by default,
+ * an in-memory store under the "memory" profile and an embedded memory-mapped store under the "mapped" profile.
+ * 
+ * Row-returning methods use the same column names as the Cypher queries in DesignSpaceRepository.
+ * 
+ * The library is versioned. An import stages its writes, which no read sees, and publishes them all at once as
+ * a new library version. A reader that pins a version keeps seeing the spaces of that version, including 
+ * spaces that a later version replaced or deleted, until it unpins it. Spaces written directly rather than 
+ * staged, such as the spaces of a pool specification, belong to every version.
+ */
+public interface DesignSpaceStore {
+	
+	void createDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs, 
+			ArrayList<ArrayList<String>> allCompRoles);
+	
+	/**
+	 * Creates constructs in the library namespace given. Namespaces scope the constructs that pool designs are 
+	 * matched against; spaces created one at a time, such as part spaces, belong to no namespace.
+	 */
+	void createDesignSpaces(ArrayList<String> outputSpaceIDs, ArrayList<ArrayList<ArrayList<String>>> allCompIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompRoles, ArrayList<String> contentHashes, String namespace);
+	
+	DesignSpace loadDesignSpace(String targetSpaceID);
+	
+	List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs);
+	
+	/**
+	 * Loads the target spaces as of the given library version. A space absent from that version loads as null.
+	 */
+	List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs, long version);
+	
+	void deleteDesignSpace(String targetSpaceID);
+	
+	void deleteDesignSpaces(ArrayList<String> targetSpaceIDs);
+	
+	void deleteAll();
+	
+	void deleteEdges(Set<Edge> deletedEdges);
+	
+	void deleteNodes(Set<Node> deletedNodes);
+	
+	Set<String> getDesignSpaceIDs();
+	
+	Set<String> getCompositeDesignSpaceIDs();
+	
+	/**
+	 * Returns up to limit IDs of composite spaces, in ID order, that sort after afterSpaceID. Passing the last ID
+	 * of one page as afterSpaceID returns the next page; the empty string returns the first page.
+	 */
+	List<String> getCompositeDesignSpaceIDs(String afterSpaceID, int limit);
+	
+	/**
+	 * Returns up to limit rows describing the spaces, in ID order, that sort after afterSpaceID. Rows are paged 
+	 * like getCompositeDesignSpaceIDs. Each row has the spaceID, namespace, isComposite, nodeCount, componentCount
+	 * and componentRoleCount of a space. They are read from what the store keeps about each space, without 
+	 * loading its nodes or edges.
+	 */
+	List<Map<String, Object>> listDesignSpaces(String afterSpaceID, int limit);
+	
+	/**
+	 * Returns rows as for listDesignSpaces, but only for spaces with an edge labeled with the given component ID
+	 * or role.
+	 */
+	List<Map<String, Object>> searchDesignSpaces(String label, String afterSpaceID, int limit);
+	
+	/**
+	 * Returns the row for a space as for listDesignSpaces, with its contentHash and edgeCount added, or null if
+	 * there is no such space.
+	 */
+	Map<String, Object> getDesignSpaceSummary(String targetSpaceID);
+	
+	/**
+	 * Returns the IDs of composite spaces of the given library version and namespaces whose component ID set 
+	 * shares at least one ID with compIDs. An empty set of namespaces selects composite spaces regardless of 
+	 * namespace.
+	 */
+	Set<String> getCompositeDesignSpaceIDs(Set<String> compIDs, Set<String> namespaces, long version);
+	
+	/**
+	 * Component ID and role sets are kept per space on create, union and setStartComponents, so these are read 
+	 * without walking the edges of the space.
+	 */
+	Set<String> getComponentIDs(String targetSpaceID);
+	
+	Set<String> getComponentRoles(String targetSpaceID);
+	
+	/**
+	 * Returns a spaceID, componentIDs and componentRoles row for each of the target spaces that exists.
+	 */
+	List<Map<String, Object>> getComponents(List<String> targetSpaceIDs);
+	
+	List<Map<String, Object>> getComponents(List<String> targetSpaceIDs, long version);
+	
+	/**
+	 * Labels the start edges of a part space with compIDs and compRoles. Part spaces have no other edges, so 
+	 * these also replace the component sets of the space.
+	 */
+	void setStartComponents(String targetSpaceID, ArrayList<String> compIDs, ArrayList<String> compRoles);
+	
+	List<Map<String, Object>> mapDesignSpace(String targetSpaceID);
+	
+	/**
+	 * Returns up to limit of the edge rows of mapDesignSpace, skipping the first offset. Edges are returned in an 
+	 * order that is stable for as long as the space is unchanged, so consecutive pages do not overlap.
+	 */
+	List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit);
+	
+	/**
+	 * Returns a page of edge rows as for mapDesignSpace, but of the target space as of the given library version.
+	 */
+	List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit, long version);
+	
+	List<Map<String, Object>> getContentHashes();
+	
+	List<Map<String, Object>> getPartEntries();
+	
+	void savePartEntries(ArrayList<String> compIDs, ArrayList<String> partHashes, 
+			ArrayList<ArrayList<String>> allPartSpaceIDs);
+	
+	/**
+	 * Returns the current library version without blocking on writes. Clearing the library also starts a new 
+	 * version.
+	 */
+	long getLibraryVersion();
+	
+	/**
+	 * Returns the current library version and keeps the spaces of that version readable until the version is 
+	 * unpinned. Every call must be matched by a call to unpinLibraryVersion.
+	 */
+	long pinLibraryVersion();
+	
+	void unpinLibraryVersion(long version);
+	
+	/**
+	 * Starts a stage that collects writes for the next library version. Pins and stages are held by this 
+	 * process, so a stage left unpublished by a crash is never published.
+	 */
+	long createLibraryStage();
+	
+	void stageDesignSpace(long stage, String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs, 
+			ArrayList<ArrayList<String>> allCompRoles);
+	
+	/**
+	 * Stages constructs as createDesignSpaces would create them. Staging a space that is already staged replaces 
+	 * the staged space.
+	 */
+	void stageDesignSpaces(long stage, ArrayList<String> outputSpaceIDs, 
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles, 
+			ArrayList<String> contentHashes, String namespace);
+	
+	void stageDeletion(long stage, String targetSpaceID);
+	
+	/**
+	 * Replaces or deletes every space named by the stage as one new library version and returns that version.
+	 */
+	long publishLibraryStage(long stage);
+	
+	void discardLibraryStage(long stage);
+}
@@ -0,0 +1,749 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+import poolDesigner.spring.data.neo4j.store.LibraryVersions.StagedWrite;
+
+/**
+ * Keeps design spaces in process memory for single-node deployments and for running the service without a 
+ * Neo4j server. Stored spaces are never handed out: loads return copies and writes replace whole spaces, so
+ * concurrent readers never see a space being modified.
+ * 
+ * Because loaded spaces are detached copies, deleting edges or nodes of a loaded space has no effect on the 
+ * stored space; a caller that wants to keep such edits must recreate the space.
+ * 
+ * A published import replaces spaces in place; the values it replaces are kept for readers pinned to older
+ * library versions until they unpin them.
+ */
+@Component
+@Profile("memory")
+public class InMemoryDesignSpaceStore implements DesignSpaceStore {
+	
+	private final ConcurrentHashMap<String, DesignSpace> idToSpace = new ConcurrentHashMap<String, DesignSpace>();
+	
+	private final ConcurrentSkipListSet<String> spaceIDs = new ConcurrentSkipListSet<String>();
+	
+	private final ConcurrentSkipListSet<String> compositeIDs = new ConcurrentSkipListSet<String>();
+	
+	private final ConcurrentHashMap<String, Set<String>> idToComponentIDs = 
+			new ConcurrentHashMap<String, Set<String>>();
+	
+	private final ConcurrentHashMap<String, Set<String>> idToComponentRoles = 
+			new ConcurrentHashMap<String, Set<String>>();
+	
+	private final ConcurrentHashMap<String, String> idToNamespace = new ConcurrentHashMap<String, String>();
+	
+	private final ConcurrentHashMap<String, Set<String>> namespaceToIDs = new ConcurrentHashMap<String, Set<String>>();
+	
+	private final ConcurrentHashMap<String, String> idToContentHash = new ConcurrentHashMap<String, String>();
+	
+	private final ConcurrentHashMap<String, PartEntry> compIDToPartEntry = new ConcurrentHashMap<String, PartEntry>();
+	
+	private final LibraryVersions<RetiredSpace> versions = new LibraryVersions<RetiredSpace>();
+
+	@Override
+	public void createDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		versions.forget(outputSpaceID);
+		
+		putDesignSpace(buildDesignSpace(outputSpaceID, allCompIDs, allCompRoles));
+	}
+
+	@Override
+	public void createDesignSpaces(ArrayList<String> outputSpaceIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, String namespace) {
+		for (int i = 0; i < outputSpaceIDs.size(); i++) {
+			versions.forget(outputSpaceIDs.get(i));
+			
+			putConstruct(buildDesignSpace(outputSpaceIDs.get(i), allCompIDs.get(i), allCompRoles.get(i)), 
+					contentHashes.get(i), namespace);
+		}
+	}
+
+	@Override
+	public DesignSpace loadDesignSpace(String targetSpaceID) {
+		DesignSpace space = idToSpace.get(targetSpaceID);
+		
+		if (space != null) {
+			return space.copy(targetSpaceID);
+		} else {
+			return null;
+		}
+	}
+
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs) {
+		List<DesignSpace> spaces = new ArrayList<DesignSpace>(targetSpaceIDs.size());
+		
+		for (String targetSpaceID : targetSpaceIDs) {
+			spaces.add(loadDesignSpace(targetSpaceID));
+		}
+		
+		return spaces;
+	}
+
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs, long version) {
+		List<DesignSpace> spaces = new ArrayList<DesignSpace>(targetSpaceIDs.size());
+		
+		for (String targetSpaceID : targetSpaceIDs) {
+			DesignSpace space = idToSpace.get(targetSpaceID);
+			
+			if (space == null || !versions.isVisible(targetSpaceID, version)) {
+				RetiredSpace retired = versions.getRetired(targetSpaceID, version);
+				
+				space = retired != null ? retired.space : null;
+			}
+			
+			if (space != null) {
+				spaces.add(space.copy(targetSpaceID));
+			} else {
+				spaces.add(null);
+			}
+		}
+		
+		return spaces;
+	}
+
+	@Override
+	public void deleteDesignSpace(String targetSpaceID) {
+		removeDesignSpace(targetSpaceID);
+		
+		versions.forget(targetSpaceID);
+	}
+	
+	private void removeDesignSpace(String targetSpaceID) {
+		idToSpace.remove(targetSpaceID);
+		
+		spaceIDs.remove(targetSpaceID);
+		
+		compositeIDs.remove(targetSpaceID);
+		
+		idToComponentIDs.remove(targetSpaceID);
+		
+		idToComponentRoles.remove(targetSpaceID);
+		
+		idToContentHash.remove(targetSpaceID);
+		
+		String namespace = idToNamespace.remove(targetSpaceID);
+		
+		if (namespace != null) {
+			namespaceToIDs.get(namespace).remove(targetSpaceID);
+		}
+	}
+
+	@Override
+	public void deleteDesignSpaces(ArrayList<String> targetSpaceIDs) {
+		for (String targetSpaceID : targetSpaceIDs) {
+			deleteDesignSpace(targetSpaceID);
+		}
+	}
+
+	@Override
+	public void deleteAll() {
+		idToSpace.clear();
+		
+		spaceIDs.clear();
+		
+		compositeIDs.clear();
+		
+		idToComponentIDs.clear();
+		
+		idToComponentRoles.clear();
+		
+		idToContentHash.clear();
+		
+		idToNamespace.clear();
+		
+		namespaceToIDs.clear();
+		
+		compIDToPartEntry.clear();
+		
+		versions.forgetAll();
+		
+		versions.publish(versions.createStage());
+	}
+
+	@Override
+	public void deleteEdges(Set<Edge> deletedEdges) {
+		
+	}
+
+	@Override
+	public void deleteNodes(Set<Node> deletedNodes) {
+		
+	}
+
+	@Override
+	public Set<String> getDesignSpaceIDs() {
+		return new HashSet<String>(idToSpace.keySet());
+	}
+
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs() {
+		return new HashSet<String>(compositeIDs);
+	}
+
+	@Override
+	public List<String> getCompositeDesignSpaceIDs(String afterSpaceID, int limit) {
+		List<String> pageIDs = new ArrayList<String>(Math.min(limit, compositeIDs.size()));
+		
+		for (String compositeID : compositeIDs.tailSet(afterSpaceID, false)) {
+			if (pageIDs.size() == limit) {
+				break;
+			}
+			
+			pageIDs.add(compositeID);
+		}
+		
+		return pageIDs;
+	}
+
+	@Override
+	public List<Map<String, Object>> listDesignSpaces(String afterSpaceID, int limit) {
+		return searchDesignSpaces(null, afterSpaceID, limit);
+	}
+
+	@Override
+	public List<Map<String, Object>> searchDesignSpaces(String label, String afterSpaceID, int limit) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(Math.min(limit, spaceIDs.size()));
+		
+		for (String spaceID : spaceIDs.tailSet(afterSpaceID, false)) {
+			if (rows.size() == limit) {
+				break;
+			}
+			
+			Set<String> compIDs = idToComponentIDs.get(spaceID);
+			
+			Set<String> compRoles = idToComponentRoles.get(spaceID);
+			
+			DesignSpace space = idToSpace.get(spaceID);
+			
+			if (compIDs != null && compRoles != null && space != null 
+					&& (label == null || compIDs.contains(label) || compRoles.contains(label))) {
+				rows.add(getSpaceRow(spaceID, space, compIDs, compRoles));
+			}
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public Map<String, Object> getDesignSpaceSummary(String targetSpaceID) {
+		Set<String> compIDs = idToComponentIDs.get(targetSpaceID);
+		
+		Set<String> compRoles = idToComponentRoles.get(targetSpaceID);
+		
+		DesignSpace space = idToSpace.get(targetSpaceID);
+		
+		if (compIDs != null && compRoles != null && space != null) {
+			Map<String, Object> row = getSpaceRow(targetSpaceID, space, compIDs, compRoles);
+			
+			int numEdges = 0;
+			
+			if (space.hasNodes()) {
+				for (Node node : space.getNodes()) {
+					if (node.hasEdges()) {
+						numEdges += node.getNumEdges();
+					}
+				}
+			}
+			
+			row.put("contentHash", idToContentHash.get(targetSpaceID));
+			row.put("edgeCount", numEdges);
+			
+			return row;
+		} else {
+			return null;
+		}
+	}
+	
+	private Map<String, Object> getSpaceRow(String spaceID, DesignSpace space, Set<String> compIDs, 
+			Set<String> compRoles) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		
+		row.put("spaceID", spaceID);
+		row.put("namespace", idToNamespace.get(spaceID));
+		row.put("isComposite", compositeIDs.contains(spaceID));
+		row.put("nodeCount", space.getNumNodes());
+		row.put("componentCount", compIDs.size());
+		row.put("componentRoleCount", compRoles.size());
+		
+		return row;
+	}
+
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs(Set<String> compIDs, Set<String> namespaces, long version) {
+		Set<String> sharingIDs = new HashSet<String>();
+		
+		if (namespaces.isEmpty()) {
+			addSharingIDs(compositeIDs, compIDs, version, sharingIDs);
+		} else {
+			for (String namespace : namespaces) {
+				Set<String> namespaceIDs = namespaceToIDs.get(namespace);
+				
+				if (namespaceIDs != null) {
+					addSharingIDs(namespaceIDs, compIDs, version, sharingIDs);
+				}
+			}
+		}
+		
+		for (Map.Entry<String, RetiredSpace> entry : versions.getRetired(version).entrySet()) {
+			RetiredSpace retired = entry.getValue();
+			
+			if (retired.isComposite && (namespaces.isEmpty() || namespaces.contains(retired.namespace))
+					&& !Collections.disjoint(retired.compIDs, compIDs)) {
+				sharingIDs.add(entry.getKey());
+			}
+		}
+		
+		return sharingIDs;
+	}
+
+	@Override
+	public Set<String> getComponentIDs(String targetSpaceID) {
+		Set<String> compIDs = idToComponentIDs.get(targetSpaceID);
+		
+		if (compIDs != null) {
+			return new HashSet<String>(compIDs);
+		} else {
+			return new HashSet<String>();
+		}
+	}
+
+	@Override
+	public Set<String> getComponentRoles(String targetSpaceID) {
+		Set<String> compRoles = idToComponentRoles.get(targetSpaceID);
+		
+		if (compRoles != null) {
+			return new HashSet<String>(compRoles);
+		} else {
+			return new HashSet<String>();
+		}
+	}
+
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(targetSpaceIDs.size());
+		
+		for (String targetSpaceID : targetSpaceIDs) {
+			Set<String> compIDs = idToComponentIDs.get(targetSpaceID);
+			
+			Set<String> compRoles = idToComponentRoles.get(targetSpaceID);
+			
+			if (compIDs != null && compRoles != null) {
+				Map<String, Object> row = new HashMap<String, Object>();
+				
+				row.put("spaceID", targetSpaceID);
+				row.put("componentIDs", new ArrayList<String>(compIDs));
+				row.put("componentRoles", new ArrayList<String>(compRoles));
+				
+				rows.add(row);
+			}
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs, long version) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(targetSpaceIDs.size());
+		
+		for (String targetSpaceID : targetSpaceIDs) {
+			Set<String> compIDs = idToComponentIDs.get(targetSpaceID);
+			
+			Set<String> compRoles = idToComponentRoles.get(targetSpaceID);
+			
+			if (compIDs == null || compRoles == null || !versions.isVisible(targetSpaceID, version)) {
+				RetiredSpace retired = versions.getRetired(targetSpaceID, version);
+				
+				if (retired != null) {
+					compIDs = retired.compIDs;
+					
+					compRoles = retired.compRoles;
+				} else {
+					compIDs = null;
+				}
+			}
+			
+			if (compIDs != null && compRoles != null) {
+				Map<String, Object> row = new HashMap<String, Object>();
+				
+				row.put("spaceID", targetSpaceID);
+				row.put("componentIDs", new ArrayList<String>(compIDs));
+				row.put("componentRoles", new ArrayList<String>(compRoles));
+				
+				rows.add(row);
+			}
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public void setStartComponents(String targetSpaceID, ArrayList<String> compIDs, ArrayList<String> compRoles) {
+		DesignSpace space = loadDesignSpace(targetSpaceID);
+		
+		if (space != null) {
+			for (Node start : space.getStartNodes()) {
+				if (start.hasEdges()) {
+					List<Node> heads = new ArrayList<Node>();
+					
+					for (Edge edge : start.getEdges()) {
+						heads.add(edge.getHead());
+					}
+					
+					start.clearEdges();
+					
+					for (Node head : heads) {
+						start.createEdge(head, new ArrayList<String>(compIDs), new ArrayList<String>(compRoles));
+					}
+				}
+			}
+			
+			putDesignSpace(space);
+		}
+	}
+
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID) {
+		return mapDesignSpace(targetSpaceID, 0, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit) {
+		return mapDesignSpace(targetSpaceID, idToSpace.get(targetSpaceID), offset, limit);
+	}
+	
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit, long version) {
+		DesignSpace space = idToSpace.get(targetSpaceID);
+		
+		if (space == null || !versions.isVisible(targetSpaceID, version)) {
+			RetiredSpace retired = versions.getRetired(targetSpaceID, version);
+			
+			space = retired != null ? retired.space : null;
+		}
+		
+		return mapDesignSpace(targetSpaceID, space, offset, limit);
+	}
+	
+	private static List<Map<String, Object>> mapDesignSpace(String targetSpaceID, DesignSpace space, int offset, 
+			int limit) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		
+		int numSkipped = 0;
+		
+		if (space != null && space.hasNodes()) {
+			for (Node tail : space.getNodes()) {
+				if (tail.hasEdges()) {
+					for (Edge edge : tail.getEdges()) {
+						if (numSkipped < offset) {
+							numSkipped++;
+							
+							continue;
+						} else if (rows.size() == limit) {
+							return rows;
+						}
+						
+						Map<String, Object> row = new HashMap<String, Object>();
+						
+						row.put("spaceID", targetSpaceID);
+						row.put("tailID", tail.getNodeID());
+						row.put("tailType", tail.getNodeType());
+						row.put("componentRoles", edge.getComponentRoles());
+						row.put("headID", edge.getHead().getNodeID());
+						row.put("headType", edge.getHead().getNodeType());
+						
+						rows.add(row);
+					}
+				}
+			}
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getContentHashes() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(idToContentHash.size());
+		
+		for (Map.Entry<String, String> entry : idToContentHash.entrySet()) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			
+			row.put("spaceID", entry.getKey());
+			row.put("contentHash", entry.getValue());
+			
+			rows.add(row);
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getPartEntries() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(compIDToPartEntry.size());
+		
+		for (Map.Entry<String, PartEntry> entry : compIDToPartEntry.entrySet()) {
+			Map<String, Object> row = new HashMap<String, Object>();
+			
+			row.put("componentID", entry.getKey());
+			row.put("contentHash", entry.getValue().contentHash);
+			row.put("spaceIDs", entry.getValue().spaceIDs);
+			
+			rows.add(row);
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public void savePartEntries(ArrayList<String> compIDs, ArrayList<String> partHashes,
+			ArrayList<ArrayList<String>> allPartSpaceIDs) {
+		for (int i = 0; i < compIDs.size(); i++) {
+			compIDToPartEntry.put(compIDs.get(i), 
+					new PartEntry(partHashes.get(i), new ArrayList<String>(allPartSpaceIDs.get(i))));
+		}
+	}
+	
+	@Override
+	public long getLibraryVersion() {
+		return versions.getVersion();
+	}
+
+	@Override
+	public long pinLibraryVersion() {
+		return versions.pin();
+	}
+
+	@Override
+	public void unpinLibraryVersion(long version) {
+		versions.unpin(version);
+	}
+
+	@Override
+	public long createLibraryStage() {
+		return versions.createStage();
+	}
+
+	@Override
+	public void stageDesignSpace(long stage, String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		final DesignSpace space = buildDesignSpace(outputSpaceID, allCompIDs, allCompRoles);
+		
+		versions.stage(stage, outputSpaceID, new StagedWrite() {
+			@Override
+			public void apply(long version) {
+				retireDesignSpace(space.getSpaceID(), version);
+				
+				putDesignSpace(space);
+			}
+		});
+	}
+
+	@Override
+	public void stageDesignSpaces(long stage, ArrayList<String> outputSpaceIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, final String namespace) {
+		for (int i = 0; i < outputSpaceIDs.size(); i++) {
+			final DesignSpace space = buildDesignSpace(outputSpaceIDs.get(i), allCompIDs.get(i), allCompRoles.get(i));
+			
+			final String contentHash = contentHashes.get(i);
+			
+			versions.stage(stage, space.getSpaceID(), new StagedWrite() {
+				@Override
+				public void apply(long version) {
+					retireDesignSpace(space.getSpaceID(), version);
+					
+					putConstruct(space, contentHash, namespace);
+				}
+			});
+		}
+	}
+
+	@Override
+	public void stageDeletion(long stage, final String targetSpaceID) {
+		versions.stage(stage, targetSpaceID, new StagedWrite() {
+			@Override
+			public void apply(long version) {
+				retireDesignSpace(targetSpaceID, version);
+				
+				removeDesignSpace(targetSpaceID);
+				
+				versions.forget(targetSpaceID);
+			}
+		});
+	}
+
+	@Override
+	public long publishLibraryStage(long stage) {
+		return versions.publish(stage);
+	}
+
+	@Override
+	public void discardLibraryStage(long stage) {
+		versions.discardStage(stage);
+	}
+	
+	private void addSharingIDs(Set<String> candidateIDs, Set<String> compIDs, long version, 
+			Set<String> sharingIDs) {
+		for (String candidateID : candidateIDs) {
+			Set<String> spaceCompIDs = idToComponentIDs.get(candidateID);
+			
+			if (compositeIDs.contains(candidateID) && spaceCompIDs != null 
+					&& versions.isVisible(candidateID, version) && !Collections.disjoint(spaceCompIDs, compIDs)) {
+				sharingIDs.add(candidateID);
+			}
+		}
+	}
+	
+	private void retireDesignSpace(String spaceID, long version) {
+		DesignSpace space = idToSpace.get(spaceID);
+		
+		if (space != null) {
+			versions.retire(spaceID, new RetiredSpace(space, idToComponentIDs.get(spaceID), 
+					idToComponentRoles.get(spaceID), compositeIDs.contains(spaceID), idToNamespace.get(spaceID)), 
+					version);
+		} else {
+			versions.retire(spaceID, null, version);
+		}
+	}
+	
+	private void putDesignSpace(DesignSpace space) {
+		idToSpace.put(space.getSpaceID(), space);
+		
+		spaceIDs.add(space.getSpaceID());
+		
+		idToComponentIDs.put(space.getSpaceID(), space.getComponentIDs());
+		
+		idToComponentRoles.put(space.getSpaceID(), space.getComponentRoles());
+		
+		if (space.getNumNodes() > 2) {
+			compositeIDs.add(space.getSpaceID());
+		} else {
+			compositeIDs.remove(space.getSpaceID());
+		}
+	}
+	
+	private void putConstruct(DesignSpace space, String contentHash, String namespace) {
+		putDesignSpace(space);
+		
+		idToContentHash.put(space.getSpaceID(), contentHash);
+		
+		String oldNamespace = idToNamespace.put(space.getSpaceID(), namespace);
+		
+		if (oldNamespace != null && !oldNamespace.equals(namespace)) {
+			namespaceToIDs.get(oldNamespace).remove(space.getSpaceID());
+		}
+		
+		Set<String> namespaceIDs = namespaceToIDs.get(namespace);
+		
+		if (namespaceIDs == null) {
+			namespaceToIDs.putIfAbsent(namespace, ConcurrentHashMap.<String>newKeySet());
+			
+			namespaceIDs = namespaceToIDs.get(namespace);
+		}
+		
+		namespaceIDs.add(space.getSpaceID());
+	}
+	
+	private DesignSpace buildDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		DesignSpace space = new DesignSpace(outputSpaceID, 0);
+		
+		Node tail = space.createStartNode();
+		
+		for (int i = 0; i < allCompIDs.size(); i++) {
+			Node head;
+			
+			if (i < allCompIDs.size() - 1) {
+				head = space.createNode();
+			} else {
+				head = space.createAcceptNode();
+			}
+			
+			tail.createEdge(head, new ArrayList<String>(allCompIDs.get(i)), new ArrayList<String>(allCompRoles.get(i)));
+			
+			tail = head;
+		}
+		
+		return space;
+	}
+	
+	private static class RetiredSpace {
+		final DesignSpace space;
+		
+		final Set<String> compIDs;
+		
+		final Set<String> compRoles;
+		
+		final boolean isComposite;
+		
+		final String namespace;
+		
+		RetiredSpace(DesignSpace space, Set<String> compIDs, Set<String> compRoles, boolean isComposite, 
+				String namespace) {
+			this.space = space;
+			
+			this.compIDs = compIDs;
+			
+			this.compRoles = compRoles;
+			
+			this.isComposite = isComposite;
+			
+			this.namespace = namespace;
+		}
+	}
+	
+	private static class PartEntry {
+		final String contentHash;
+		
+		final List<String> spaceIDs;
+		
+		PartEntry(String contentHash, List<String> spaceIDs) {
+			this.contentHash = contentHash;
+			
+			this.spaceIDs = spaceIDs;
+		}
+	}
+}
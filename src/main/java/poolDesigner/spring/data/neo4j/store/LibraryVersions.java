@@ -0,0 +1,280 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Library versioning for the stores that keep their index in process memory. Staged writes are held here until 
+ * their stage is published. Publishing a stage applies its writes under the next version: each write first 
+ * retires the value the space had, which keeps that value readable by readers pinned to an older version, and 
+ * stamps the space with the new version, which hides its new value from them. Retired values are released once 
+ * no reader is pinned to a version that can see them.
+ * 
+ * A space without a stamp, whether written directly or never staged, is visible to every version. Stores must 
+ * read the value of a space before checking whether it is visible, since a publish stamps a space before it 
+ * replaces the value.
+ */
+class LibraryVersions<T> {
+	
+	interface StagedWrite {
+		void apply(long version);
+	}
+	
+	private final VersionPins pins = new VersionPins();
+	
+	private volatile long version;
+	
+	private final AtomicLong stageCount = new AtomicLong();
+	
+	private final ConcurrentHashMap<Long, Map<String, StagedWrite>> stageToWrites = 
+			new ConcurrentHashMap<Long, Map<String, StagedWrite>>();
+	
+	private final ConcurrentHashMap<String, Long> idToVersion = new ConcurrentHashMap<String, Long>();
+	
+	private final Map<String, List<RetiredValue<T>>> idToRetired = new HashMap<String, List<RetiredValue<T>>>();
+	
+	long getVersion() {
+		return version;
+	}
+	
+	long pin() {
+		synchronized (pins) {
+			long pinned = version;
+			
+			pins.pin(pinned);
+			
+			return pinned;
+		}
+	}
+	
+	void unpin(long pinned) {
+		pins.unpin(pinned);
+		
+		release();
+	}
+	
+	long createStage() {
+		long stage = stageCount.incrementAndGet();
+		
+		stageToWrites.put(stage, new LinkedHashMap<String, StagedWrite>());
+		
+		return stage;
+	}
+	
+	/**
+	 * Stages a write of the space, replacing any write of the same space already staged.
+	 */
+	void stage(long stage, String spaceID, StagedWrite write) {
+		Map<String, StagedWrite> writes = getStagedWrites(stage);
+		
+		synchronized (writes) {
+			writes.remove(spaceID);
+			
+			writes.put(spaceID, write);
+		}
+	}
+	
+	void discardStage(long stage) {
+		stageToWrites.remove(stage);
+	}
+	
+	/**
+	 * Applies the writes of the stage in the order they were staged and then publishes them as the next version. 
+	 * Publishes are serialised, so no two stages write under the same version.
+	 */
+	synchronized long publish(long stage) {
+		Map<String, StagedWrite> writes = getStagedWrites(stage);
+		
+		long nextVersion = version + 1;
+		
+		synchronized (writes) {
+			for (StagedWrite write : writes.values()) {
+				write.apply(nextVersion);
+			}
+		}
+		
+		stageToWrites.remove(stage);
+		
+		synchronized (pins) {
+			version = nextVersion;
+		}
+		
+		release();
+		
+		return nextVersion;
+	}
+	
+	/**
+	 * Keeps the value the space had before the given version readable by older versions and hides the space from 
+	 * them. A null value retires a space that did not exist.
+	 */
+	void retire(String spaceID, T value, long nextVersion) {
+		if (value != null) {
+			Long valueVersion = idToVersion.get(spaceID);
+			
+			synchronized (idToRetired) {
+				List<RetiredValue<T>> retiredValues = idToRetired.get(spaceID);
+				
+				if (retiredValues == null) {
+					retiredValues = new ArrayList<RetiredValue<T>>(1);
+					
+					idToRetired.put(spaceID, retiredValues);
+				}
+				
+				retiredValues.add(new RetiredValue<T>(value, valueVersion != null ? valueVersion : 0, nextVersion));
+			}
+		}
+		
+		idToVersion.put(spaceID, nextVersion);
+	}
+	
+	/**
+	 * Makes the current value of the space visible to every version, as for a space written directly.
+	 */
+	void forget(String spaceID) {
+		idToVersion.remove(spaceID);
+	}
+	
+	void forgetAll() {
+		idToVersion.clear();
+	}
+	
+	boolean isVisible(String spaceID, long pinned) {
+		Long spaceVersion = idToVersion.get(spaceID);
+		
+		return spaceVersion == null || spaceVersion <= pinned;
+	}
+	
+	/**
+	 * Returns the retired value of the space that the pinned version sees, or null if it sees none.
+	 */
+	T getRetired(String spaceID, long pinned) {
+		synchronized (idToRetired) {
+			List<RetiredValue<T>> retiredValues = idToRetired.get(spaceID);
+			
+			if (retiredValues != null) {
+				for (RetiredValue<T> retiredValue : retiredValues) {
+					if (retiredValue.isVisible(pinned)) {
+						return retiredValue.value;
+					}
+				}
+			}
+			
+			return null;
+		}
+	}
+	
+	/**
+	 * Returns the retired values that the pinned version sees, by space ID.
+	 */
+	Map<String, T> getRetired(long pinned) {
+		Map<String, T> idToValue = new HashMap<String, T>();
+		
+		synchronized (idToRetired) {
+			for (Map.Entry<String, List<RetiredValue<T>>> entry : idToRetired.entrySet()) {
+				for (RetiredValue<T> retiredValue : entry.getValue()) {
+					if (retiredValue.isVisible(pinned)) {
+						idToValue.put(entry.getKey(), retiredValue.value);
+					}
+				}
+			}
+		}
+		
+		return idToValue;
+	}
+	
+	boolean hasRetired() {
+		synchronized (idToRetired) {
+			return !idToRetired.isEmpty();
+		}
+	}
+	
+	private void release() {
+		long oldestVersion;
+		
+		synchronized (pins) {
+			oldestVersion = pins.getOldestVersion(version);
+		}
+		
+		synchronized (idToRetired) {
+			Iterator<List<RetiredValue<T>>> retiredIter = idToRetired.values().iterator();
+			
+			while (retiredIter.hasNext()) {
+				List<RetiredValue<T>> retiredValues = retiredIter.next();
+				
+				Iterator<RetiredValue<T>> valueIter = retiredValues.iterator();
+				
+				while (valueIter.hasNext()) {
+					if (valueIter.next().retiredVersion <= oldestVersion) {
+						valueIter.remove();
+					}
+				}
+				
+				if (retiredValues.isEmpty()) {
+					retiredIter.remove();
+				}
+			}
+		}
+	}
+	
+	private Map<String, StagedWrite> getStagedWrites(long stage) {
+		Map<String, StagedWrite> writes = stageToWrites.get(stage);
+		
+		if (writes == null) {
+			throw new IllegalArgumentException("Library stage " + stage + " does not exist");
+		}
+		
+		return writes;
+	}
+	
+	private static class RetiredValue<T> {
+		final T value;
+		
+		final long version;
+		
+		final long retiredVersion;
+		
+		RetiredValue(T value, long version, long retiredVersion) {
+			this.value = value;
+			
+			this.version = version;
+			
+			this.retiredVersion = retiredVersion;
+		}
+		
+		boolean isVisible(long pinned) {
+			return version <= pinned && pinned < retiredVersion;
+		}
+	}
+}
@@ -0,0 +1,1544 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+import poolDesigner.spring.data.neo4j.store.LibraryVersions.StagedWrite;
+
+/**
+ * Embedded design space store for read-mostly deployments, kept in a MappedLog under a local directory. Labels
+ * (space, node and component IDs, roles and hashes) are interned into a dictionary that is itself part of the 
+ * log, and each space is a single record of node entries and fixed-width edge entries that refer to labels by 
+ * index. Reads decode straight from the mapped pages; only the dictionary and an index from space ID to record 
+ * are held on the heap.
+ * 
+ * Every write appends records and forces the active segment before returning, so an import that crashes loses 
+ * at most the write in progress. Replaced and deleted spaces stay in the log until compaction, which copies 
+ * the live spaces into a new generation directory and switches to it by atomically replacing the CURRENT file 
+ * and then syncing the store directory. A crash during compaction leaves the previous generation current.
+ * 
+ * Publishing an import appends its staged spaces under the write lock, so reads wait for the publish but not 
+ * for the rest of the import. A space replaced by a publish keeps its old record for readers pinned to an 
+ * older library version, and compaction waits until no such record is left. A crash during a publish leaves 
+ * the spaces appended so far in place; importing again completes it.
+ * 
+ * Like InMemoryDesignSpaceStore, loads return detached spaces, so deleting edges or nodes of a loaded space 
+ * does not change the stored space.
+ */
+@Component
+@Profile("mapped")
+public class MappedDesignSpaceStore implements DesignSpaceStore {
+	
+	@Value("${poolDesigner.store.mapped.directory:poolDesigner-store}")
+	String directory;
+	
+	@Value("${poolDesigner.store.mapped.segmentSize:67108864}")
+	int segmentSize;
+	
+	private static final byte LABEL = 1;
+	
+	private static final byte SPACE = 2;
+	
+	private static final byte DELETE = 3;
+	
+	private static final byte PART = 4;
+	
+	private static final byte CLEAR = 5;
+	
+	private static final byte NAMESPACE = 6;
+	
+	private static final int NO_LABEL = -1;
+	
+	private static final int EDGE_WIDTH = 6;
+	
+	private static final String CURRENT = "CURRENT";
+	
+	private static final String GENERATION_PREFIX = "gen-";
+	
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private int generation;
+	
+	private MappedLog log;
+	
+	private List<String> labels;
+	
+	private Map<String, Integer> labelToIndex;
+	
+	private Map<String, SpaceEntry> idToSpace;
+	
+	private TreeSet<String> spaceIDs;
+	
+	private TreeSet<String> compositeIDs;
+	
+	private Map<String, Set<String>> namespaceToIDs;
+	
+	private Map<String, PartEntry> compIDToPart;
+	
+	private long liveBytes;
+	
+	private final LibraryVersions<SpaceEntry> versions = new LibraryVersions<SpaceEntry>();
+	
+	@PostConstruct
+	public void open() throws IOException {
+		File root = new File(directory);
+		
+		if (!root.isDirectory() && !root.mkdirs()) {
+			throw new IOException("Could not create store directory " + root);
+		}
+		
+		File current = new File(root, CURRENT);
+		
+		File nextCurrent = new File(root, CURRENT + ".tmp");
+		
+		if (nextCurrent.isFile() && !nextCurrent.delete()) {
+			throw new IOException("Could not discard unfinished " + nextCurrent);
+		}
+		
+		if (current.isFile()) {
+			generation = Integer.parseInt(new String(Files.readAllBytes(current.toPath()), 
+					StandardCharsets.UTF_8).trim());
+		} else {
+			generation = 0;
+		}
+		
+		for (File genDir : root.listFiles()) {
+			if (genDir.getName().startsWith(GENERATION_PREFIX) && !genDir.equals(getGenerationDirectory(generation))) {
+				deleteDirectory(genDir);
+			}
+		}
+		
+		openGeneration(generation);
+	}
+	
+	@PreDestroy
+	public void close() {
+		lock.writeLock().lock();
+		
+		try {
+			log.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/**
+	 * Compacts the log once more than half of it is taken up by replaced or deleted spaces.
+	 */
+	@Scheduled(fixedDelay = 600000)
+	public void compactIfWasteful() throws IOException {
+		boolean isWasteful;
+		
+		lock.readLock().lock();
+		
+		try {
+			isWasteful = log.getNumBytes() > segmentSize && liveBytes < log.getNumBytes() / 2;
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		if (isWasteful) {
+			compact();
+		}
+	}
+	
+	/**
+	 * Copies the live spaces into a new generation. Does nothing while replaced spaces are kept for pinned 
+	 * readers, since their records would not survive the copy.
+	 */
+	public void compact() throws IOException {
+		lock.writeLock().lock();
+		
+		try {
+			if (versions.hasRetired()) {
+				return;
+			}
+			
+			Map<String, DesignSpace> liveSpaces = new LinkedHashMap<String, DesignSpace>();
+			
+			Map<String, String> liveHashes = new HashMap<String, String>();
+			
+			Map<String, String> liveNamespaces = new HashMap<String, String>();
+			
+			for (Map.Entry<String, SpaceEntry> entry : idToSpace.entrySet()) {
+				liveSpaces.put(entry.getKey(), decodeSpace(entry.getValue().address));
+				
+				liveHashes.put(entry.getKey(), entry.getValue().contentHash);
+				
+				liveNamespaces.put(entry.getKey(), entry.getValue().namespace);
+			}
+			
+			Map<String, PartEntry> liveParts = compIDToPart;
+			
+			MappedLog oldLog = log;
+			
+			int oldGeneration = generation;
+			
+			deleteDirectory(getGenerationDirectory(oldGeneration + 1));
+			
+			try {
+				openGeneration(oldGeneration + 1);
+
+				for (Map.Entry<String, DesignSpace> entry : liveSpaces.entrySet()) {
+					appendSpace(entry.getKey(), liveHashes.get(entry.getKey()), liveNamespaces.get(entry.getKey()), 
+							entry.getValue());
+				}
+
+				for (Map.Entry<String, PartEntry> entry : liveParts.entrySet()) {
+					appendPart(entry.getKey(), entry.getValue().contentHash, entry.getValue().spaceIDs);
+				}
+
+				log.force();
+
+				File root = new File(directory);
+				
+				MappedLog.forceDirectory(root);
+
+				File nextCurrent = new File(root, CURRENT + ".tmp");
+
+				FileOutputStream out = new FileOutputStream(nextCurrent);
+
+				try {
+					out.write(Integer.toString(generation).getBytes(StandardCharsets.UTF_8));
+
+					out.getFD().sync();
+				} finally {
+					out.close();
+				}
+
+				Files.move(nextCurrent.toPath(), new File(root, CURRENT).toPath(), 
+						StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+				
+				MappedLog.forceDirectory(root);
+			} catch (IOException ex) {
+				if (log != oldLog) {
+					log.close();
+				}
+				
+				oldLog.close();
+				
+				openGeneration(oldGeneration);
+				
+				deleteDirectory(getGenerationDirectory(oldGeneration + 1));
+				
+				throw ex;
+			}
+			
+			oldLog.close();
+			
+			deleteDirectory(getGenerationDirectory(oldGeneration));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void createDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		lock.writeLock().lock();
+		
+		try {
+			versions.forget(outputSpaceID);
+			
+			appendSpace(outputSpaceID, null, null, buildDesignSpace(outputSpaceID, allCompIDs, allCompRoles));
+			
+			log.force();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void createDesignSpaces(ArrayList<String> outputSpaceIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, String namespace) {
+		lock.writeLock().lock();
+		
+		try {
+			for (int i = 0; i < outputSpaceIDs.size(); i++) {
+				versions.forget(outputSpaceIDs.get(i));
+				
+				appendSpace(outputSpaceIDs.get(i), contentHashes.get(i), namespace, 
+						buildDesignSpace(outputSpaceIDs.get(i), allCompIDs.get(i), allCompRoles.get(i)));
+			}
+			
+			log.force();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public DesignSpace loadDesignSpace(String targetSpaceID) {
+		lock.readLock().lock();
+		
+		try {
+			SpaceEntry entry = idToSpace.get(targetSpaceID);
+			
+			if (entry != null) {
+				return decodeSpace(entry.address);
+			} else {
+				return null;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs) {
+		List<DesignSpace> spaces = new ArrayList<DesignSpace>(targetSpaceIDs.size());
+		
+		lock.readLock().lock();
+		
+		try {
+			for (String targetSpaceID : targetSpaceIDs) {
+				SpaceEntry entry = idToSpace.get(targetSpaceID);
+				
+				if (entry != null) {
+					spaces.add(decodeSpace(entry.address));
+				} else {
+					spaces.add(null);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return spaces;
+	}
+
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs, long version) {
+		List<DesignSpace> spaces = new ArrayList<DesignSpace>(targetSpaceIDs.size());
+		
+		lock.readLock().lock();
+		
+		try {
+			for (String targetSpaceID : targetSpaceIDs) {
+				SpaceEntry entry = getSpaceEntry(targetSpaceID, version);
+				
+				if (entry != null) {
+					spaces.add(decodeSpace(entry.address));
+				} else {
+					spaces.add(null);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return spaces;
+	}
+
+	@Override
+	public void deleteDesignSpace(String targetSpaceID) {
+		ArrayList<String> targetSpaceIDs = new ArrayList<String>(1);
+		
+		targetSpaceIDs.add(targetSpaceID);
+		
+		deleteDesignSpaces(targetSpaceIDs);
+	}
+
+	@Override
+	public void deleteDesignSpaces(ArrayList<String> targetSpaceIDs) {
+		lock.writeLock().lock();
+		
+		try {
+			for (String targetSpaceID : targetSpaceIDs) {
+				if (idToSpace.containsKey(targetSpaceID)) {
+					appendDeletion(targetSpaceID);
+				}
+				
+				versions.forget(targetSpaceID);
+			}
+			
+			log.force();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void deleteAll() {
+		lock.writeLock().lock();
+		
+		try {
+			replay(log.append(new ByteRecord(CLEAR).toByteArray()));
+			
+			log.force();
+			
+			versions.forgetAll();
+			
+			versions.publish(versions.createStage());
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void deleteEdges(Set<Edge> deletedEdges) {
+		
+	}
+
+	@Override
+	public void deleteNodes(Set<Node> deletedNodes) {
+		
+	}
+
+	@Override
+	public Set<String> getDesignSpaceIDs() {
+		lock.readLock().lock();
+		
+		try {
+			return new HashSet<String>(idToSpace.keySet());
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs() {
+		lock.readLock().lock();
+		
+		try {
+			return new HashSet<String>(compositeIDs);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<String> getCompositeDesignSpaceIDs(String afterSpaceID, int limit) {
+		lock.readLock().lock();
+		
+		try {
+			List<String> pageIDs = new ArrayList<String>(Math.min(limit, compositeIDs.size()));
+			
+			for (String compositeID : compositeIDs.tailSet(afterSpaceID, false)) {
+				if (pageIDs.size() == limit) {
+					break;
+				}
+				
+				pageIDs.add(compositeID);
+			}
+			
+			return pageIDs;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Map<String, Object>> listDesignSpaces(String afterSpaceID, int limit) {
+		return searchDesignSpaces(null, afterSpaceID, limit);
+	}
+
+	/**
+	 * Compares label indices rather than strings, so a search scans the entries of the spaces after afterSpaceID 
+	 * without reading any space records.
+	 */
+	@Override
+	public List<Map<String, Object>> searchDesignSpaces(String label, String afterSpaceID, int limit) {
+		lock.readLock().lock();
+		
+		try {
+			List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(Math.min(limit, spaceIDs.size()));
+			
+			Set<Integer> searchLabels = new HashSet<Integer>(1);
+			
+			if (label != null) {
+				if (labelToIndex.containsKey(label)) {
+					searchLabels.add(labelToIndex.get(label));
+				} else {
+					return rows;
+				}
+			}
+			
+			for (String spaceID : spaceIDs.tailSet(afterSpaceID, false)) {
+				if (rows.size() == limit) {
+					break;
+				}
+				
+				SpaceEntry entry = idToSpace.get(spaceID);
+				
+				if (label == null || sharesLabel(entry.compIDs, searchLabels) 
+						|| sharesLabel(entry.compRoles, searchLabels)) {
+					rows.add(getSpaceRow(spaceID, entry));
+				}
+			}
+			
+			return rows;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Map<String, Object> getDesignSpaceSummary(String targetSpaceID) {
+		lock.readLock().lock();
+		
+		try {
+			SpaceEntry entry = idToSpace.get(targetSpaceID);
+			
+			if (entry != null) {
+				Map<String, Object> row = getSpaceRow(targetSpaceID, entry);
+				
+				row.put("contentHash", entry.contentHash);
+				row.put("edgeCount", new SpaceView(log.read(entry.address)).numEdges);
+				
+				return row;
+			} else {
+				return null;
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	private Map<String, Object> getSpaceRow(String spaceID, SpaceEntry entry) {
+		Map<String, Object> row = new HashMap<String, Object>();
+		
+		row.put("spaceID", spaceID);
+		row.put("namespace", entry.namespace);
+		row.put("isComposite", compositeIDs.contains(spaceID));
+		row.put("nodeCount", entry.numNodes);
+		row.put("componentCount", entry.compIDs.length);
+		row.put("componentRoleCount", entry.compRoles.length);
+		
+		return row;
+	}
+
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs(Set<String> compIDs, Set<String> namespaces, long version) {
+		Set<String> sharingIDs = new HashSet<String>();
+		
+		lock.readLock().lock();
+		
+		try {
+			Set<Integer> compLabels = new HashSet<Integer>();
+			
+			for (String compID : compIDs) {
+				Integer compLabel = labelToIndex.get(compID);
+				
+				if (compLabel != null) {
+					compLabels.add(compLabel);
+				}
+			}
+			
+			if (!compLabels.isEmpty()) {
+				if (namespaces.isEmpty()) {
+					addSharingIDs(compositeIDs, compLabels, version, sharingIDs);
+				} else {
+					for (String namespace : namespaces) {
+						if (namespaceToIDs.containsKey(namespace)) {
+							addSharingIDs(namespaceToIDs.get(namespace), compLabels, version, sharingIDs);
+						}
+					}
+				}
+				
+				for (Map.Entry<String, SpaceEntry> entry : versions.getRetired(version).entrySet()) {
+					SpaceEntry retired = entry.getValue();
+					
+					if (retired.numNodes > 2 && (namespaces.isEmpty() || namespaces.contains(retired.namespace))
+							&& sharesLabel(retired.compIDs, compLabels)) {
+						sharingIDs.add(entry.getKey());
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return sharingIDs;
+	}
+
+	@Override
+	public Set<String> getComponentIDs(String targetSpaceID) {
+		lock.readLock().lock();
+		
+		try {
+			SpaceEntry entry = idToSpace.get(targetSpaceID);
+			
+			if (entry != null) {
+				return new HashSet<String>(getLabels(entry.compIDs));
+			} else {
+				return new HashSet<String>();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public Set<String> getComponentRoles(String targetSpaceID) {
+		lock.readLock().lock();
+		
+		try {
+			SpaceEntry entry = idToSpace.get(targetSpaceID);
+			
+			if (entry != null) {
+				return new HashSet<String>(getLabels(entry.compRoles));
+			} else {
+				return new HashSet<String>();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(targetSpaceIDs.size());
+		
+		lock.readLock().lock();
+		
+		try {
+			for (String targetSpaceID : targetSpaceIDs) {
+				SpaceEntry entry = idToSpace.get(targetSpaceID);
+				
+				if (entry != null) {
+					Map<String, Object> row = new HashMap<String, Object>();
+					
+					row.put("spaceID", targetSpaceID);
+					row.put("componentIDs", getLabels(entry.compIDs));
+					row.put("componentRoles", getLabels(entry.compRoles));
+					
+					rows.add(row);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs, long version) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>(targetSpaceIDs.size());
+		
+		lock.readLock().lock();
+		
+		try {
+			for (String targetSpaceID : targetSpaceIDs) {
+				SpaceEntry entry = getSpaceEntry(targetSpaceID, version);
+				
+				if (entry != null) {
+					Map<String, Object> row = new HashMap<String, Object>();
+					
+					row.put("spaceID", targetSpaceID);
+					row.put("componentIDs", getLabels(entry.compIDs));
+					row.put("componentRoles", getLabels(entry.compRoles));
+					
+					rows.add(row);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public void setStartComponents(String targetSpaceID, ArrayList<String> compIDs, ArrayList<String> compRoles) {
+		lock.writeLock().lock();
+		
+		try {
+			SpaceEntry entry = idToSpace.get(targetSpaceID);
+			
+			if (entry != null) {
+				DesignSpace space = decodeSpace(entry.address);
+				
+				for (Node start : space.getStartNodes()) {
+					if (start.hasEdges()) {
+						List<Node> heads = new ArrayList<Node>();
+
+						for (Edge edge : start.getEdges()) {
+							heads.add(edge.getHead());
+						}
+
+						start.clearEdges();
+
+						for (Node head : heads) {
+							start.createEdge(head, new ArrayList<String>(compIDs), new ArrayList<String>(compRoles));
+						}
+					}
+				}
+				
+				appendSpace(targetSpaceID, entry.contentHash, entry.namespace, space);
+				
+				log.force();
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID) {
+		return mapDesignSpace(targetSpaceID, 0, Integer.MAX_VALUE);
+	}
+
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit) {
+		lock.readLock().lock();
+		
+		try {
+			return mapDesignSpace(targetSpaceID, idToSpace.get(targetSpaceID), offset, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit, long version) {
+		lock.readLock().lock();
+		
+		try {
+			return mapDesignSpace(targetSpaceID, getSpaceEntry(targetSpaceID, version), offset, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+	
+	/**
+	 * Decodes a page of edge rows from a space record. Callers hold the read lock.
+	 */
+	private List<Map<String, Object>> mapDesignSpace(String targetSpaceID, SpaceEntry entry, int offset, int limit) {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		
+		if (entry != null) {
+			SpaceView view = new SpaceView(log.read(entry.address));
+			
+			int endEdge = (int) Math.min((long) offset + limit, view.numEdges);
+			
+			for (int i = offset; i < endEdge; i++) {
+				int tail = view.getEdgeField(i, 0);
+				
+				int head = view.getEdgeField(i, 1);
+				
+				Map<String, Object> row = new HashMap<String, Object>();
+				
+				row.put("spaceID", targetSpaceID);
+				row.put("tailID", getLabel(view.getNodeField(tail, 0)));
+				row.put("tailType", getLabel(view.getNodeField(tail, 1)));
+				row.put("componentRoles", view.getEdgeLabels(i, 4));
+				row.put("headID", getLabel(view.getNodeField(head, 0)));
+				row.put("headType", getLabel(view.getNodeField(head, 1)));
+				
+				rows.add(row);
+			}
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getContentHashes() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		
+		lock.readLock().lock();
+		
+		try {
+			for (Map.Entry<String, SpaceEntry> entry : idToSpace.entrySet()) {
+				if (entry.getValue().contentHash != null) {
+					Map<String, Object> row = new HashMap<String, Object>();
+
+					row.put("spaceID", entry.getKey());
+					row.put("contentHash", entry.getValue().contentHash);
+
+					rows.add(row);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public List<Map<String, Object>> getPartEntries() {
+		List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+		
+		lock.readLock().lock();
+		
+		try {
+			for (Map.Entry<String, PartEntry> entry : compIDToPart.entrySet()) {
+				Map<String, Object> row = new HashMap<String, Object>();
+
+				row.put("componentID", entry.getKey());
+				row.put("contentHash", entry.getValue().contentHash);
+				row.put("spaceIDs", new ArrayList<String>(entry.getValue().spaceIDs));
+
+				rows.add(row);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		
+		return rows;
+	}
+
+	@Override
+	public void savePartEntries(ArrayList<String> compIDs, ArrayList<String> partHashes,
+			ArrayList<ArrayList<String>> allPartSpaceIDs) {
+		lock.writeLock().lock();
+		
+		try {
+			for (int i = 0; i < compIDs.size(); i++) {
+				appendPart(compIDs.get(i), partHashes.get(i), allPartSpaceIDs.get(i));
+			}
+			
+			log.force();
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
+	@Override
+	public long getLibraryVersion() {
+		return versions.getVersion();
+	}
+
+	@Override
+	public long pinLibraryVersion() {
+		return versions.pin();
+	}
+
+	@Override
+	public void unpinLibraryVersion(long version) {
+		versions.unpin(version);
+	}
+
+	@Override
+	public long createLibraryStage() {
+		return versions.createStage();
+	}
+
+	@Override
+	public void stageDesignSpace(long stage, String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		stageSpace(stage, outputSpaceID, null, null, buildDesignSpace(outputSpaceID, allCompIDs, allCompRoles));
+	}
+
+	@Override
+	public void stageDesignSpaces(long stage, ArrayList<String> outputSpaceIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, String namespace) {
+		for (int i = 0; i < outputSpaceIDs.size(); i++) {
+			stageSpace(stage, outputSpaceIDs.get(i), contentHashes.get(i), namespace, 
+					buildDesignSpace(outputSpaceIDs.get(i), allCompIDs.get(i), allCompRoles.get(i)));
+		}
+	}
+
+	@Override
+	public void stageDeletion(long stage, final String targetSpaceID) {
+		versions.stage(stage, targetSpaceID, new StagedWrite() {
+			@Override
+			public void apply(long version) {
+				SpaceEntry entry = idToSpace.get(targetSpaceID);
+				
+				if (entry != null) {
+					versions.retire(targetSpaceID, entry, version);
+					
+					try {
+						appendDeletion(targetSpaceID);
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+				}
+				
+				versions.forget(targetSpaceID);
+			}
+		});
+	}
+
+	@Override
+	public long publishLibraryStage(long stage) {
+		lock.writeLock().lock();
+		
+		try {
+			long version = versions.publish(stage);
+			
+			log.force();
+			
+			return version;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void discardLibraryStage(long stage) {
+		versions.discardStage(stage);
+	}
+	
+	private void stageSpace(long stage, final String spaceID, final String contentHash, final String namespace, 
+			final DesignSpace space) {
+		versions.stage(stage, spaceID, new StagedWrite() {
+			@Override
+			public void apply(long version) {
+				versions.retire(spaceID, idToSpace.get(spaceID), version);
+				
+				try {
+					appendSpace(spaceID, contentHash, namespace, space);
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Returns the entry of the space that the pinned version sees, which is either its live entry or an entry 
+	 * kept for pinned readers after a publish replaced or deleted the space.
+	 */
+	private SpaceEntry getSpaceEntry(String spaceID, long version) {
+		SpaceEntry entry = idToSpace.get(spaceID);
+		
+		if (entry != null && versions.isVisible(spaceID, version)) {
+			return entry;
+		} else {
+			return versions.getRetired(spaceID, version);
+		}
+	}
+	
+	private void openGeneration(int nextGeneration) throws IOException {
+		generation = nextGeneration;
+		
+		labels = new ArrayList<String>();
+		
+		labelToIndex = new HashMap<String, Integer>();
+		
+		idToSpace = new HashMap<String, SpaceEntry>();
+		
+		spaceIDs = new TreeSet<String>();
+		
+		compositeIDs = new TreeSet<String>();
+		
+		namespaceToIDs = new HashMap<String, Set<String>>();
+		
+		compIDToPart = new HashMap<String, PartEntry>();
+		
+		liveBytes = 0;
+		
+		log = new MappedLog(getGenerationDirectory(generation), segmentSize);
+		
+		log.open(new MappedLog.RecordVisitor() {
+			@Override
+			public void visit(long address, ByteBuffer payload) {
+				replay(address, payload);
+			}
+		});
+	}
+	
+	private void replay(long address) {
+		replay(address, log.read(address));
+	}
+	
+	/**
+	 * Applies a record to the in-heap dictionary and indexes, both when the log is opened and after each append.
+	 */
+	private void replay(long address, ByteBuffer payload) {
+		byte type = payload.get(0);
+		
+		if (type == LABEL) {
+			byte[] bytes = new byte[payload.capacity() - 1];
+			
+			ByteBuffer view = payload.duplicate();
+			
+			view.position(1);
+			
+			view.get(bytes);
+			
+			String label = new String(bytes, StandardCharsets.UTF_8);
+			
+			labelToIndex.put(label, labels.size());
+			
+			labels.add(label);
+		} else if (type == SPACE) {
+			SpaceView view = new SpaceView(payload);
+			
+			String spaceID = getLabel(view.spaceID);
+			
+			removeSpaceEntry(spaceID);
+			
+			SpaceEntry entry = new SpaceEntry(address, view.numNodes, getLabel(view.contentHash), 
+					log.getRecordSize(address), view.getDistinctLabels(2), view.getDistinctLabels(4));
+			
+			idToSpace.put(spaceID, entry);
+			
+			spaceIDs.add(spaceID);
+			
+			if (entry.numNodes > 2) {
+				compositeIDs.add(spaceID);
+			}
+			
+			liveBytes += entry.numBytes;
+		} else if (type == DELETE) {
+			removeSpaceEntry(getLabel(payload.getInt(1)));
+		} else if (type == PART) {
+			String compID = getLabel(payload.getInt(1));
+			
+			String contentHash = getLabel(payload.getInt(5));
+			
+			int numSpaceIDs = payload.getInt(9);
+			
+			List<String> spaceIDs = new ArrayList<String>(numSpaceIDs);
+			
+			for (int i = 0; i < numSpaceIDs; i++) {
+				spaceIDs.add(getLabel(payload.getInt(13 + 4*i)));
+			}
+			
+			compIDToPart.put(compID, new PartEntry(contentHash, spaceIDs));
+		} else if (type == NAMESPACE) {
+			String spaceID = getLabel(payload.getInt(1));
+			
+			SpaceEntry entry = idToSpace.get(spaceID);
+			
+			if (entry != null) {
+				entry.namespace = getLabel(payload.getInt(5));
+				
+				Set<String> namespaceIDs = namespaceToIDs.get(entry.namespace);
+				
+				if (namespaceIDs == null) {
+					namespaceIDs = new HashSet<String>();
+					
+					namespaceToIDs.put(entry.namespace, namespaceIDs);
+				}
+				
+				namespaceIDs.add(spaceID);
+			}
+		} else if (type == CLEAR) {
+			idToSpace.clear();
+			
+			spaceIDs.clear();
+			
+			compositeIDs.clear();
+			
+			namespaceToIDs.clear();
+			
+			compIDToPart.clear();
+			
+			liveBytes = 0;
+		}
+	}
+	
+	private void removeSpaceEntry(String spaceID) {
+		SpaceEntry entry = idToSpace.remove(spaceID);
+		
+		spaceIDs.remove(spaceID);
+		
+		compositeIDs.remove(spaceID);
+		
+		if (entry != null) {
+			if (entry.namespace != null) {
+				namespaceToIDs.get(entry.namespace).remove(spaceID);
+			}
+			
+			liveBytes -= entry.numBytes;
+		}
+	}
+	
+	private int intern(String label) throws IOException {
+		if (label == null) {
+			return NO_LABEL;
+		}
+		
+		Integer index = labelToIndex.get(label);
+		
+		if (index == null) {
+			ByteRecord record = new ByteRecord(LABEL);
+			
+			record.write(label.getBytes(StandardCharsets.UTF_8));
+			
+			replay(log.append(record.toByteArray()));
+			
+			index = labelToIndex.get(label);
+		}
+		
+		return index.intValue();
+	}
+	
+	private String getLabel(int index) {
+		if (index == NO_LABEL) {
+			return null;
+		} else {
+			return labels.get(index);
+		}
+	}
+	
+	private void appendDeletion(String spaceID) throws IOException {
+		ByteRecord record = new ByteRecord(DELETE);
+		
+		record.writeInt(intern(spaceID));
+		
+		replay(log.append(record.toByteArray()));
+	}
+	
+	private void appendPart(String compID, String contentHash, List<String> spaceIDs) throws IOException {
+		int[] spaceIndices = new int[spaceIDs.size()];
+		
+		for (int i = 0; i < spaceIDs.size(); i++) {
+			spaceIndices[i] = intern(spaceIDs.get(i));
+		}
+		
+		ByteRecord record = new ByteRecord(PART);
+		
+		record.writeInt(intern(compID));
+		record.writeInt(intern(contentHash));
+		record.writeInt(spaceIndices.length);
+		
+		for (int spaceIndex : spaceIndices) {
+			record.writeInt(spaceIndex);
+		}
+		
+		replay(log.append(record.toByteArray()));
+	}
+	
+	/**
+	 * Appends a space record followed, for a space in a library namespace, by a namespace record of the space ID 
+	 * and namespace labels. Replaying a space record drops the namespace of the space it replaces.
+	 */
+	private void appendSpace(String spaceID, String contentHash, String namespace, DesignSpace space) 
+			throws IOException {
+		appendSpace(spaceID, contentHash, space);
+		
+		if (namespace != null) {
+			ByteRecord record = new ByteRecord(NAMESPACE);
+			
+			record.writeInt(intern(spaceID));
+			record.writeInt(intern(namespace));
+			
+			replay(log.append(record.toByteArray()));
+		}
+	}
+	
+	/**
+	 * Appends a space record: a header of label indices and counts, two ints per node (ID and type), six ints 
+	 * per edge (tail, head, and the start and length of its component IDs and roles in the label pool, with -1 
+	 * marking an edge without components), and finally the label pool itself.
+	 */
+	private void appendSpace(String spaceID, String contentHash, DesignSpace space) throws IOException {
+		List<Node> nodes = new ArrayList<Node>();
+		
+		if (space.hasNodes()) {
+			nodes.addAll(space.getNodes());
+		}
+		
+		Map<Node, Integer> nodeToIndex = new HashMap<Node, Integer>();
+		
+		List<Integer> nodeFields = new ArrayList<Integer>(2*nodes.size());
+		
+		for (Node node : nodes) {
+			nodeToIndex.put(node, nodeToIndex.size());
+			
+			nodeFields.add(intern(node.getNodeID()));
+			
+			nodeFields.add(intern(node.getNodeType()));
+		}
+		
+		List<Integer> edgeFields = new ArrayList<Integer>();
+		
+		List<Integer> pool = new ArrayList<Integer>();
+		
+		for (Node node : nodes) {
+			if (node.hasEdges()) {
+				for (Edge edge : node.getEdges()) {
+					edgeFields.add(nodeToIndex.get(node));
+					
+					edgeFields.add(nodeToIndex.get(edge.getHead()));
+					
+					appendLabels(edge.getComponentIDs(), edgeFields, pool);
+					
+					appendLabels(edge.getComponentRoles(), edgeFields, pool);
+				}
+			}
+		}
+		
+		ByteRecord record = new ByteRecord(SPACE);
+		
+		record.writeInt(intern(spaceID));
+		record.writeInt(intern(contentHash));
+		record.writeInt(space.getIdIndex());
+		record.writeInt(nodes.size());
+		record.writeInt(edgeFields.size()/EDGE_WIDTH);
+		
+		for (Integer field : nodeFields) {
+			record.writeInt(field.intValue());
+		}
+		
+		for (Integer field : edgeFields) {
+			record.writeInt(field.intValue());
+		}
+		
+		for (Integer label : pool) {
+			record.writeInt(label.intValue());
+		}
+		
+		replay(log.append(record.toByteArray()));
+	}
+	
+	private void appendLabels(List<String> edgeLabels, List<Integer> edgeFields, List<Integer> pool) 
+			throws IOException {
+		if (edgeLabels == null) {
+			edgeFields.add(NO_LABEL);
+			
+			edgeFields.add(NO_LABEL);
+		} else {
+			edgeFields.add(pool.size());
+			
+			edgeFields.add(edgeLabels.size());
+			
+			for (String edgeLabel : edgeLabels) {
+				pool.add(intern(edgeLabel));
+			}
+		}
+	}
+	
+	private DesignSpace decodeSpace(long address) {
+		SpaceView view = new SpaceView(log.read(address));
+		
+		DesignSpace space = new DesignSpace(getLabel(view.spaceID), view.idIndex);
+		
+		Node[] nodes = new Node[view.numNodes];
+		
+		for (int i = 0; i < view.numNodes; i++) {
+			String nodeType = getLabel(view.getNodeField(i, 1));
+			
+			if (nodeType != null) {
+				nodes[i] = space.createTypedNode(getLabel(view.getNodeField(i, 0)), nodeType);
+			} else {
+				nodes[i] = space.createNode(getLabel(view.getNodeField(i, 0)));
+			}
+		}
+		
+		for (int i = 0; i < view.numEdges; i++) {
+			Node tail = nodes[view.getEdgeField(i, 0)];
+			
+			Node head = nodes[view.getEdgeField(i, 1)];
+			
+			ArrayList<String> compIDs = view.getEdgeLabels(i, 2);
+			
+			ArrayList<String> compRoles = view.getEdgeLabels(i, 4);
+			
+			if (compIDs != null && compRoles != null) {
+				tail.createEdge(head, compIDs, compRoles);
+			} else {
+				tail.createEdge(head);
+			}
+		}
+		
+		return space;
+	}
+	
+	private void addSharingIDs(Set<String> candidateIDs, Set<Integer> compLabels, long version, 
+			Set<String> sharingIDs) {
+		for (String candidateID : candidateIDs) {
+			if (compositeIDs.contains(candidateID) && versions.isVisible(candidateID, version)
+					&& sharesLabel(idToSpace.get(candidateID).compIDs, compLabels)) {
+				sharingIDs.add(candidateID);
+			}
+		}
+	}
+	
+	private static boolean sharesLabel(int[] spaceLabels, Set<Integer> labels) {
+		for (int label : spaceLabels) {
+			if (labels.contains(label)) {
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	private List<String> getLabels(int[] labelIndices) {
+		List<String> labelList = new ArrayList<String>(labelIndices.length);
+		
+		for (int labelIndex : labelIndices) {
+			labelList.add(getLabel(labelIndex));
+		}
+		
+		return labelList;
+	}
+	
+	private DesignSpace buildDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		DesignSpace space = new DesignSpace(outputSpaceID, 0);
+		
+		Node tail = space.createStartNode();
+		
+		for (int i = 0; i < allCompIDs.size(); i++) {
+			Node head;
+			
+			if (i < allCompIDs.size() - 1) {
+				head = space.createNode();
+			} else {
+				head = space.createAcceptNode();
+			}
+			
+			tail.createEdge(head, allCompIDs.get(i), allCompRoles.get(i));
+			
+			tail = head;
+		}
+		
+		return space;
+	}
+	
+	private File getGenerationDirectory(int generation) {
+		return new File(directory, String.format("%s%06d", GENERATION_PREFIX, generation));
+	}
+	
+	private static void deleteDirectory(File dir) throws IOException {
+		if (dir.isDirectory()) {
+			for (File file : dir.listFiles()) {
+				if (!file.delete()) {
+					throw new IOException("Could not delete " + file);
+				}
+			}
+			
+			if (!dir.delete()) {
+				throw new IOException("Could not delete " + dir);
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the header of a space record and gives indexed access to its node and edge entries without 
+	 * copying them out of the mapped page.
+	 */
+	private class SpaceView {
+		final ByteBuffer payload;
+		
+		final int spaceID;
+		
+		final int contentHash;
+		
+		final int idIndex;
+		
+		final int numNodes;
+		
+		final int numEdges;
+		
+		final int nodeStart;
+		
+		final int edgeStart;
+		
+		final int poolStart;
+		
+		SpaceView(ByteBuffer payload) {
+			this.payload = payload;
+			
+			spaceID = payload.getInt(1);
+			
+			contentHash = payload.getInt(5);
+			
+			idIndex = payload.getInt(9);
+			
+			numNodes = payload.getInt(13);
+			
+			numEdges = payload.getInt(17);
+			
+			nodeStart = 21;
+			
+			edgeStart = nodeStart + 8*numNodes;
+			
+			poolStart = edgeStart + 4*EDGE_WIDTH*numEdges;
+		}
+		
+		int getNodeField(int node, int field) {
+			return payload.getInt(nodeStart + 8*node + 4*field);
+		}
+		
+		int getEdgeField(int edge, int field) {
+			return payload.getInt(edgeStart + 4*EDGE_WIDTH*edge + 4*field);
+		}
+		
+		ArrayList<String> getEdgeLabels(int edge, int field) {
+			int start = getEdgeField(edge, field);
+			
+			if (start == NO_LABEL) {
+				return null;
+			}
+			
+			int length = getEdgeField(edge, field + 1);
+			
+			ArrayList<String> edgeLabels = new ArrayList<String>(length);
+			
+			for (int i = 0; i < length; i++) {
+				edgeLabels.add(getLabel(payload.getInt(poolStart + 4*(start + i))));
+			}
+			
+			return edgeLabels;
+		}
+		
+		/**
+		 * Returns the sorted, distinct label indices stored in a label field across all edges.
+		 */
+		int[] getDistinctLabels(int field) {
+			int numLabels = 0;
+			
+			for (int i = 0; i < numEdges; i++) {
+				if (getEdgeField(i, field) != NO_LABEL) {
+					numLabels += getEdgeField(i, field + 1);
+				}
+			}
+			
+			int[] labels = new int[numLabels];
+			
+			int k = 0;
+			
+			for (int i = 0; i < numEdges; i++) {
+				int start = getEdgeField(i, field);
+				
+				if (start != NO_LABEL) {
+					int length = getEdgeField(i, field + 1);
+					
+					for (int j = 0; j < length; j++) {
+						labels[k++] = payload.getInt(poolStart + 4*(start + j));
+					}
+				}
+			}
+			
+			Arrays.sort(labels);
+			
+			int numDistinct = 0;
+			
+			for (int i = 0; i < labels.length; i++) {
+				if (i == 0 || labels[i] != labels[i - 1]) {
+					labels[numDistinct++] = labels[i];
+				}
+			}
+			
+			return Arrays.copyOf(labels, numDistinct);
+		}
+	}
+	
+	private static class ByteRecord extends DataOutputStream {
+		
+		ByteRecord(byte type) {
+			super(new ByteArrayOutputStream());
+			
+			try {
+				writeByte(type);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+		
+		byte[] toByteArray() {
+			return ((ByteArrayOutputStream) out).toByteArray();
+		}
+	}
+	
+	private static class SpaceEntry {
+		final long address;
+		
+		final int numNodes;
+		
+		final String contentHash;
+		
+		final int numBytes;
+		
+		final int[] compIDs;
+		
+		final int[] compRoles;
+		
+		String namespace;
+		
+		SpaceEntry(long address, int numNodes, String contentHash, int numBytes, int[] compIDs, int[] compRoles) {
+			this.address = address;
+			
+			this.numNodes = numNodes;
+			
+			this.contentHash = contentHash;
+			
+			this.numBytes = numBytes;
+			
+			this.compIDs = compIDs;
+			
+			this.compRoles = compRoles;
+		}
+	}
+	
+	private static class PartEntry {
+		final String contentHash;
+		
+		final List<String> spaceIDs;
+		
+		PartEntry(String contentHash, List<String> spaceIDs) {
+			this.contentHash = contentHash;
+			
+			this.spaceIDs = spaceIDs;
+		}
+	}
+}
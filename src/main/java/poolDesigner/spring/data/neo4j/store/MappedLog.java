@@ -0,0 +1,284 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only record log kept in memory-mapped segment files. Each record is framed by its payload length and 
+ * a CRC32 of the payload, and the length is written last, so a record torn by a crash is either invisible or 
+ * fails its checksum. Opening the log replays every intact record and discards everything from the first
+ * damaged one onwards.
+ * 
+ * A record is addressed by its segment and offset, and reads return a view of the mapped page, so decoding does
+ * not copy the record. The log is not thread-safe; callers serialise appends against reads.
+ */
+class MappedLog {
+	private static final int HEADER_SIZE = 8;
+	
+	private static final String SEGMENT_PREFIX = "segment-";
+	
+	private static final String SEGMENT_SUFFIX = ".log";
+	
+	private final File directory;
+	
+	private final int segmentSize;
+	
+	private final List<MappedByteBuffer> segments;
+	
+	private int writePosition;
+	
+	private long numBytes;
+	
+	MappedLog(File directory, int segmentSize) {
+		this.directory = directory;
+		
+		this.segmentSize = segmentSize;
+		
+		segments = new ArrayList<MappedByteBuffer>();
+	}
+	
+	/**
+	 * Maps the existing segments and passes each intact record to the visitor in append order.
+	 */
+	void open(RecordVisitor visitor) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create store directory " + directory);
+		}
+		
+		File[] segmentFiles = directory.listFiles();
+		
+		Arrays.sort(segmentFiles);
+		
+		boolean isDamaged = false;
+		
+		for (File segmentFile : segmentFiles) {
+			if (!segmentFile.getName().startsWith(SEGMENT_PREFIX)) {
+				continue;
+			}
+			
+			if (isDamaged) {
+				if (!segmentFile.delete()) {
+					throw new IOException("Could not discard damaged segment " + segmentFile);
+				}
+				
+				forceDirectory(directory);
+				
+				continue;
+			}
+			
+			MappedByteBuffer segment = map(segmentFile, Math.max(segmentSize, (int) segmentFile.length()));
+			
+			segments.add(segment);
+			
+			int position = 0;
+			
+			while (position + HEADER_SIZE <= segment.capacity()) {
+				int length = segment.getInt(position);
+				
+				if (length <= 0) {
+					break;
+				}
+				
+				if (position + HEADER_SIZE + length > segment.capacity() 
+						|| segment.getInt(position + 4) != checksum(segment, position + HEADER_SIZE, length)) {
+					isDamaged = true;
+					
+					break;
+				}
+				
+				visitor.visit(getAddress(segments.size() - 1, position), 
+						slice(segment, position + HEADER_SIZE, length));
+				
+				position += HEADER_SIZE + length;
+				
+				numBytes += HEADER_SIZE + length;
+			}
+			
+			writePosition = position;
+			
+			if (position + HEADER_SIZE <= segment.capacity() && segment.getInt(position) != 0) {
+				isDamaged = true;
+			}
+			
+			if (isDamaged) {
+				clear(segment, position);
+			}
+		}
+		
+		if (segments.isEmpty()) {
+			addSegment(segmentSize);
+		}
+	}
+	
+	long append(byte[] payload) throws IOException {
+		MappedByteBuffer segment = segments.get(segments.size() - 1);
+		
+		if (writePosition + HEADER_SIZE + payload.length > segment.capacity()) {
+			segment.force();
+			
+			segment = addSegment(Math.max(segmentSize, HEADER_SIZE + payload.length));
+		}
+		
+		ByteBuffer view = segment.duplicate();
+		
+		view.position(writePosition + HEADER_SIZE);
+		
+		view.put(payload);
+		
+		segment.putInt(writePosition + 4, checksum(segment, writePosition + HEADER_SIZE, payload.length));
+		
+		segment.putInt(writePosition, payload.length);
+		
+		long address = getAddress(segments.size() - 1, writePosition);
+		
+		writePosition += HEADER_SIZE + payload.length;
+		
+		numBytes += HEADER_SIZE + payload.length;
+		
+		return address;
+	}
+	
+	ByteBuffer read(long address) {
+		MappedByteBuffer segment = segments.get((int) (address >>> 32));
+		
+		int position = (int) address;
+		
+		return slice(segment, position + HEADER_SIZE, segment.getInt(position));
+	}
+	
+	int getRecordSize(long address) {
+		return HEADER_SIZE + segments.get((int) (address >>> 32)).getInt((int) address);
+	}
+	
+	long getNumBytes() {
+		return numBytes;
+	}
+	
+	void force() {
+		if (!segments.isEmpty()) {
+			segments.get(segments.size() - 1).force();
+		}
+	}
+	
+	/**
+	 * Releases the segments. The mappings themselves are unmapped once they are garbage collected.
+	 */
+	void close() {
+		force();
+		
+		segments.clear();
+	}
+	
+	private MappedByteBuffer addSegment(int size) throws IOException {
+		File segmentFile = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, segments.size(), 
+				SEGMENT_SUFFIX));
+		
+		MappedByteBuffer segment = map(segmentFile, size);
+		
+		forceDirectory(directory);
+		
+		segments.add(segment);
+		
+		writePosition = 0;
+		
+		return segment;
+	}
+	
+	private MappedByteBuffer map(File segmentFile, int size) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(segmentFile, "rw");
+		
+		try {
+			return file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		} finally {
+			file.close();
+		}
+	}
+	
+	/**
+	 * Forces the entries of a directory, so that files created, renamed or deleted in it survive a crash. Does 
+	 * nothing on platforms that cannot open a directory for reading, such as Windows.
+	 */
+	static void forceDirectory(File directory) throws IOException {
+		FileChannel channel;
+		
+		try {
+			channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ);
+		} catch (IOException ex) {
+			return;
+		}
+		
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+	
+	private static void clear(MappedByteBuffer segment, int position) {
+		for (int i = position; i < segment.capacity(); i++) {
+			segment.put(i, (byte) 0);
+		}
+		
+		segment.force();
+	}
+	
+	private static ByteBuffer slice(ByteBuffer segment, int position, int length) {
+		ByteBuffer view = segment.duplicate();
+		
+		view.limit(position + length);
+		
+		view.position(position);
+		
+		return view.slice();
+	}
+	
+	private static int checksum(ByteBuffer segment, int position, int length) {
+		CRC32 crc = new CRC32();
+		
+		crc.update(slice(segment, position, length));
+		
+		return (int) crc.getValue();
+	}
+	
+	private static long getAddress(int segmentIndex, int position) {
+		return ((long) segmentIndex << 32) | position;
+	}
+	
+	interface RecordVisitor {
+		void visit(long address, ByteBuffer payload) throws IOException;
+	}
+}
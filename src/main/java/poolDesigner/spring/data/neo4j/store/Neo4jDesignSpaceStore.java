@@ -0,0 +1,616 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+import poolDesigner.spring.data.neo4j.repositories.DesignSpaceRepository;
+import poolDesigner.spring.data.neo4j.repositories.EdgeRepository;
+import poolDesigner.spring.data.neo4j.repositories.NodeRepository;
+
+@Component
+@Conditional(Neo4jStoreCondition.class)
+@Transactional
+public class Neo4jDesignSpaceStore implements DesignSpaceStore {
+	
+	@Autowired DesignSpaceRepository designSpaceRepository;
+	@Autowired EdgeRepository edgeRepository;
+	@Autowired NodeRepository nodeRepository;
+	
+	@Value("${poolDesigner.neo4j.deleteBatchSize:10000}")
+	int deleteBatchSize;
+	
+	@Value("${poolDesigner.neo4j.libraryVersionTtlMillis:1000}")
+	long libraryVersionTtlMillis;
+	
+	private static final Logger LOG = LoggerFactory.getLogger(Neo4jDesignSpaceStore.class);
+	
+	private final Object purgeLock = new Object();
+	
+	private final VersionPins pins = new VersionPins();
+	
+	private Long libraryVersion;
+	
+	private long libraryVersionReadTime;
+	
+	@Override
+	public void createDesignSpace(String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		designSpaceRepository.createDesignSpace(outputSpaceID, allCompIDs, allCompRoles, 
+				getDistinctLabels(allCompIDs), getDistinctLabels(allCompRoles));
+	}
+	
+	@Override
+	public void createDesignSpaces(ArrayList<String> outputSpaceIDs, 
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, String namespace) {
+		ArrayList<ArrayList<String>> compIDSets = new ArrayList<ArrayList<String>>(outputSpaceIDs.size());
+		
+		ArrayList<ArrayList<String>> compRoleSets = new ArrayList<ArrayList<String>>(outputSpaceIDs.size());
+		
+		for (int i = 0; i < outputSpaceIDs.size(); i++) {
+			compIDSets.add(getDistinctLabels(allCompIDs.get(i)));
+			
+			compRoleSets.add(getDistinctLabels(allCompRoles.get(i)));
+		}
+		
+		designSpaceRepository.createDesignSpaces(outputSpaceIDs, allCompIDs, allCompRoles, compIDSets, compRoleSets,
+				contentHashes, namespace);
+	}
+	
+	@Override
+	public DesignSpace loadDesignSpace(String targetSpaceID) {
+		List<String> targetSpaceIDs = new ArrayList<String>(1);
+		
+		targetSpaceIDs.add(targetSpaceID);
+		
+		return loadDesignSpaces(targetSpaceIDs).get(0);
+	}
+	
+	/**
+	 * Builds spaces from flat node and edge rows rather than hydrating DesignSpace, Node and Edge entities through 
+	 * the OGM, so loading a space never grows the session's mapping context. The loaded spaces carry no graph IDs.
+	 */
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs) {
+		if (!targetSpaceIDs.isEmpty()) {
+			return buildDesignSpaces(targetSpaceIDs, 
+					designSpaceRepository.loadDesignSpaceRows(new ArrayList<String>(targetSpaceIDs)));
+		} else {
+			return new ArrayList<DesignSpace>(0);
+		}
+	}
+	
+	@Override
+	public List<DesignSpace> loadDesignSpaces(List<String> targetSpaceIDs, long version) {
+		if (!targetSpaceIDs.isEmpty()) {
+			return buildDesignSpaces(targetSpaceIDs, 
+					designSpaceRepository.loadDesignSpaceRows(new ArrayList<String>(targetSpaceIDs), version));
+		} else {
+			return new ArrayList<DesignSpace>(0);
+		}
+	}
+	
+	private static List<DesignSpace> buildDesignSpaces(List<String> targetSpaceIDs, List<Map<String, Object>> rows) {
+		Map<String, DesignSpace> idToSpace = new HashMap<String, DesignSpace>();
+		
+		Map<String, Map<String, Node>> idToNodes = new HashMap<String, Map<String, Node>>();
+		
+		for (Map<String, Object> row : rows) {
+			String spaceID = (String) row.get("spaceID");
+			
+			DesignSpace space = idToSpace.get(spaceID);
+			
+			if (space == null) {
+				if (row.get("idIndex") != null) {
+					space = new DesignSpace(spaceID, ((Number) row.get("idIndex")).intValue());
+				} else {
+					space = new DesignSpace(spaceID, 0);
+				}
+				
+				idToSpace.put(spaceID, space);
+				
+				idToNodes.put(spaceID, new HashMap<String, Node>());
+			}
+			
+			if (row.get("tailID") != null) {
+				Node tail = getOrCreateNode(space, idToNodes.get(spaceID), (String) row.get("tailID"), 
+						(String) row.get("tailType"));
+				
+				if (row.get("headID") != null) {
+					Node head = getOrCreateNode(space, idToNodes.get(spaceID), (String) row.get("headID"), 
+							(String) row.get("headType"));
+					
+					ArrayList<String> compIDs = toLabelList(row.get("componentIDs"));
+					
+					ArrayList<String> compRoles = toLabelList(row.get("componentRoles"));
+					
+					if (compIDs != null || compRoles != null) {
+						tail.createEdge(head, compIDs, compRoles);
+					} else {
+						tail.createEdge(head);
+					}
+				}
+			}
+		}
+		
+		List<DesignSpace> spaces = new ArrayList<DesignSpace>(targetSpaceIDs.size());
+		
+		for (String targetSpaceID : targetSpaceIDs) {
+			spaces.add(idToSpace.get(targetSpaceID));
+		}
+		
+		return spaces;
+	}
+	
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void deleteDesignSpace(String targetSpaceID) {
+		ArrayList<String> targetSpaceIDs = new ArrayList<String>(1);
+		
+		targetSpaceIDs.add(targetSpaceID);
+		
+		deleteDesignSpaces(targetSpaceIDs);
+	}
+	
+	/**
+	 * Relabels the spaces as DeletedSpace in one short transaction, which hides them from every query that matches
+	 * on DesignSpace and frees their IDs, and then purges them in bounded batches.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void deleteDesignSpaces(ArrayList<String> targetSpaceIDs) {
+		if (designSpaceRepository.markDesignSpacesDeleted(targetSpaceIDs) > 0) {
+			purgeDeletedSpaces();
+		}
+	}
+	
+	/**
+	 * Retires the library batch by batch as of the next version, deletes whatever else is left, such as part 
+	 * entries, and then publishes the emptied library as that version. Readers pinned to an older version keep 
+	 * seeing the retired spaces, which are purged once they are unpinned. Each batch is its own transaction, so 
+	 * no lock is held for the whole deletion and an interrupted deletion is completed by calling this again. 
+	 * Must not run while an import is staging spaces, since the stage would be deleted with the rest.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void deleteAll() {
+		synchronized (purgeLock) {
+			long start = System.nanoTime();
+			
+			Long version = designSpaceRepository.getLibraryVersion();
+			
+			long retiredVersion = (version != null ? version : 0L) + 1;
+			
+			long numHidden = 0;
+			
+			long numMarked;
+			
+			do {
+				numMarked = designSpaceRepository.markDesignSpacesDeleted(retiredVersion, deleteBatchSize);
+				
+				numHidden += numMarked;
+			} while (numMarked > 0);
+			
+			LOG.info("Retired {} design spaces as of library version {}", numHidden, retiredVersion);
+			
+			long numDeleted = 0;
+			
+			long numBatchDeleted;
+			
+			do {
+				numBatchDeleted = designSpaceRepository.deleteBatch(deleteBatchSize);
+				
+				numDeleted += numBatchDeleted;
+			} while (numBatchDeleted > 0);
+			
+			setLibraryVersion(designSpaceRepository.incrementLibraryVersion());
+			
+			purgeDeletedSpaces();
+			
+			LOG.info("Deleted {} design spaces and {} other nodes in {} ms", numHidden, numDeleted, 
+					(System.nanoTime() - start)/1000000);
+		}
+	}
+	
+	/**
+	 * Deletes the nodes of spaces marked as deleted, in batches of at most deleteBatchSize nodes, and then the spaces 
+	 * themselves. Spaces retired by a publish are kept while a reader is pinned to a version older than the one 
+	 * that retired them. Runs on a schedule as well, so that a deletion interrupted by a crash or restart is 
+	 * completed and retired spaces are purged once they are unpinned.
+	 */
+	@Scheduled(fixedDelay = 300000)
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void purgeDeletedSpaces() {
+		synchronized (purgeLock) {
+			long start = System.nanoTime();
+			
+			long oldestVersion;
+			
+			synchronized (pins) {
+				oldestVersion = pins.getOldestVersion(getLibraryVersion());
+			}
+			
+			long numNodes = 0;
+			
+			long numBatchNodes;
+			
+			do {
+				numBatchNodes = designSpaceRepository.deleteNodesOfDeletedSpaces(oldestVersion, deleteBatchSize);
+				
+				numNodes += numBatchNodes;
+				
+				if (numBatchNodes > 0) {
+					LOG.debug("Purged {} nodes of deleted design spaces", numNodes);
+				}
+			} while (numBatchNodes > 0);
+			
+			long numSpaces = 0;
+			
+			long numBatchSpaces;
+			
+			do {
+				numBatchSpaces = designSpaceRepository.deleteDeletedSpaces(oldestVersion, deleteBatchSize);
+				
+				numSpaces += numBatchSpaces;
+			} while (numBatchSpaces > 0);
+			
+			if (numSpaces > 0) {
+				LOG.info("Purged {} deleted design spaces and {} nodes in {} ms", numSpaces, numNodes, 
+						(System.nanoTime() - start)/1000000);
+			}
+		}
+	}
+	
+	@Override
+	public void deleteEdges(Set<Edge> deletedEdges) {
+		edgeRepository.delete(deletedEdges);
+	}
+	
+	@Override
+	public void deleteNodes(Set<Node> deletedNodes) {
+		nodeRepository.delete(deletedNodes);
+	}
+	
+	@Override
+	public Set<String> getDesignSpaceIDs() {
+		return designSpaceRepository.getDesignSpaceIDs();
+	}
+	
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs() {
+		return designSpaceRepository.getCompositeDesignSpaceIDs();
+	}
+	
+	@Override
+	public List<String> getCompositeDesignSpaceIDs(String afterSpaceID, int limit) {
+		return designSpaceRepository.getCompositeDesignSpaceIDs(afterSpaceID, limit);
+	}
+	
+	@Override
+	public List<Map<String, Object>> listDesignSpaces(String afterSpaceID, int limit) {
+		return designSpaceRepository.listDesignSpaces(afterSpaceID, limit);
+	}
+	
+	@Override
+	public List<Map<String, Object>> searchDesignSpaces(String label, String afterSpaceID, int limit) {
+		return designSpaceRepository.searchDesignSpaces(label, afterSpaceID, limit);
+	}
+	
+	@Override
+	public Map<String, Object> getDesignSpaceSummary(String targetSpaceID) {
+		List<Map<String, Object>> rows = designSpaceRepository.getDesignSpaceSummary(targetSpaceID);
+		
+		if (rows.isEmpty()) {
+			return null;
+		} else {
+			return rows.get(0);
+		}
+	}
+	
+	@Override
+	public Set<String> getCompositeDesignSpaceIDs(Set<String> compIDs, Set<String> namespaces, long version) {
+		if (namespaces.isEmpty()) {
+			return designSpaceRepository.getCompositeDesignSpaceIDs(new ArrayList<String>(compIDs), version);
+		} else {
+			return designSpaceRepository.getCompositeDesignSpaceIDs(new ArrayList<String>(compIDs), 
+					new ArrayList<String>(namespaces), version);
+		}
+	}
+	
+	@Override
+	public Set<String> getComponentIDs(String targetSpaceID) {
+		return designSpaceRepository.getComponentIDs(targetSpaceID);
+	}
+	
+	@Override
+	public Set<String> getComponentRoles(String targetSpaceID) {
+		return designSpaceRepository.getComponentRoles(targetSpaceID);
+	}
+	
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs) {
+		return designSpaceRepository.getComponents(new ArrayList<String>(targetSpaceIDs));
+	}
+	
+	@Override
+	public List<Map<String, Object>> getComponents(List<String> targetSpaceIDs, long version) {
+		return designSpaceRepository.getComponents(new ArrayList<String>(targetSpaceIDs), version);
+	}
+	
+	@Override
+	public void setStartComponents(String targetSpaceID, ArrayList<String> compIDs, ArrayList<String> compRoles) {
+		designSpaceRepository.setStartComponents(targetSpaceID, compIDs, compRoles);
+	}
+	
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID) {
+		return designSpaceRepository.mapDesignSpace(targetSpaceID);
+	}
+	
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit) {
+		return designSpaceRepository.mapDesignSpace(targetSpaceID, offset, limit);
+	}
+	
+	@Override
+	public List<Map<String, Object>> mapDesignSpace(String targetSpaceID, int offset, int limit, long version) {
+		return designSpaceRepository.mapDesignSpace(targetSpaceID, offset, limit, version);
+	}
+	
+	@Override
+	public List<Map<String, Object>> getContentHashes() {
+		return designSpaceRepository.getContentHashes();
+	}
+	
+	@Override
+	public List<Map<String, Object>> getPartEntries() {
+		return designSpaceRepository.getPartEntries();
+	}
+	
+	@Override
+	public void savePartEntries(ArrayList<String> compIDs, ArrayList<String> partHashes,
+			ArrayList<ArrayList<String>> allPartSpaceIDs) {
+		designSpaceRepository.savePartEntries(compIDs, partHashes, allPartSpaceIDs);
+	}
+	
+	/**
+	 * Returns the version last read from the library node or published by this process, and reads the library 
+	 * node again once that version is older than libraryVersionTtlMillis, so that most checks need no query but 
+	 * versions published by other processes or written out of band are seen within the TTL. Versions only 
+	 * increase, so a read never replaces a newer version published here in the meantime.
+	 */
+	@Override
+	public long getLibraryVersion() {
+		synchronized (pins) {
+			if (libraryVersion != null 
+					&& System.nanoTime() - libraryVersionReadTime < libraryVersionTtlMillis*1000000L) {
+				return libraryVersion;
+			}
+		}
+		
+		Long version = designSpaceRepository.getLibraryVersion();
+		
+		synchronized (pins) {
+			if (version != null && (libraryVersion == null || version > libraryVersion)) {
+				libraryVersion = version;
+			} else if (libraryVersion == null) {
+				libraryVersion = 0L;
+			}
+			
+			libraryVersionReadTime = System.nanoTime();
+			
+			return libraryVersion;
+		}
+	}
+	
+	private void setLibraryVersion(long version) {
+		synchronized (pins) {
+			if (libraryVersion == null || version > libraryVersion) {
+				libraryVersion = version;
+			}
+			
+			libraryVersionReadTime = System.nanoTime();
+		}
+	}
+	
+	@Override
+	public long pinLibraryVersion() {
+		synchronized (pins) {
+			long version = getLibraryVersion();
+			
+			pins.pin(version);
+			
+			return version;
+		}
+	}
+	
+	@Override
+	public void unpinLibraryVersion(long version) {
+		pins.unpin(version);
+	}
+	
+	@Override
+	public long createLibraryStage() {
+		return designSpaceRepository.createLibraryStage();
+	}
+	
+	/**
+	 * Staged spaces are labelled StagedSpace rather than DesignSpace, so no query that reads the library sees them 
+	 * and they do not contend with readers for locks on the spaces they will replace.
+	 */
+	@Override
+	public void stageDesignSpace(long stage, String outputSpaceID, ArrayList<ArrayList<String>> allCompIDs,
+			ArrayList<ArrayList<String>> allCompRoles) {
+		ArrayList<String> outputSpaceIDs = new ArrayList<String>(1);
+		
+		outputSpaceIDs.add(outputSpaceID);
+		
+		designSpaceRepository.unstageDesignSpaces(stage, outputSpaceIDs);
+		
+		designSpaceRepository.stageDesignSpace(stage, outputSpaceID, allCompIDs, allCompRoles, 
+				getDistinctLabels(allCompIDs), getDistinctLabels(allCompRoles));
+	}
+	
+	@Override
+	public void stageDesignSpaces(long stage, ArrayList<String> outputSpaceIDs,
+			ArrayList<ArrayList<ArrayList<String>>> allCompIDs, ArrayList<ArrayList<ArrayList<String>>> allCompRoles,
+			ArrayList<String> contentHashes, String namespace) {
+		ArrayList<ArrayList<String>> compIDSets = new ArrayList<ArrayList<String>>(outputSpaceIDs.size());
+		
+		ArrayList<ArrayList<String>> compRoleSets = new ArrayList<ArrayList<String>>(outputSpaceIDs.size());
+		
+		for (int i = 0; i < outputSpaceIDs.size(); i++) {
+			compIDSets.add(getDistinctLabels(allCompIDs.get(i)));
+			
+			compRoleSets.add(getDistinctLabels(allCompRoles.get(i)));
+		}
+		
+		designSpaceRepository.unstageDesignSpaces(stage, outputSpaceIDs);
+		
+		designSpaceRepository.stageDesignSpaces(stage, outputSpaceIDs, allCompIDs, allCompRoles, compIDSets, 
+				compRoleSets, contentHashes, namespace);
+	}
+	
+	@Override
+	public void stageDeletion(long stage, String targetSpaceID) {
+		ArrayList<String> targetSpaceIDs = new ArrayList<String>(1);
+		
+		targetSpaceIDs.add(targetSpaceID);
+		
+		designSpaceRepository.unstageDesignSpaces(stage, targetSpaceIDs);
+		
+		designSpaceRepository.stageDeletion(stage, targetSpaceID);
+	}
+	
+	/**
+	 * Publishes the stage in one transaction. Incrementing the version first locks the library node, so publishes 
+	 * are serialised, and the spaces the stage replaces or deletes are relabelled DeletedSpace with the new version 
+	 * as their retired version rather than deleted, so readers pinned to an older version still find them.
+	 */
+	@Override
+	public long publishLibraryStage(long stage) {
+		long start = System.nanoTime();
+		
+		final long version = designSpaceRepository.incrementLibraryVersion();
+		
+		long numRetired = designSpaceRepository.retireStagedDesignSpaces(stage, version);
+		
+		designSpaceRepository.deleteStagedDeletions(stage);
+		
+		long numPublished = designSpaceRepository.publishStagedDesignSpaces(stage, version);
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					setLibraryVersion(version);
+				}
+			});
+		} else {
+			setLibraryVersion(version);
+		}
+		
+		LOG.info("Published library version {} with {} new and {} retired design spaces in {} ms", version, 
+				numPublished, numRetired, (System.nanoTime() - start)/1000000);
+		
+		return version;
+	}
+	
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void discardLibraryStage(long stage) {
+		long numDiscarded;
+		
+		do {
+			numDiscarded = designSpaceRepository.discardStagedSpaces(stage, deleteBatchSize);
+		} while (numDiscarded > 0);
+		
+		purgeDeletedSpaces();
+	}
+	
+	private static ArrayList<String> getDistinctLabels(ArrayList<ArrayList<String>> allLabels) {
+		Set<String> distinctLabels = new LinkedHashSet<String>();
+		
+		for (ArrayList<String> labels : allLabels) {
+			distinctLabels.addAll(labels);
+		}
+		
+		return new ArrayList<String>(distinctLabels);
+	}
+	
+	private static Node getOrCreateNode(DesignSpace space, Map<String, Node> idToNode, String nodeID, 
+			String nodeType) {
+		Node node = idToNode.get(nodeID);
+		
+		if (node == null) {
+			if (nodeType != null) {
+				node = space.createTypedNode(nodeID, nodeType);
+			} else {
+				node = space.createNode(nodeID);
+			}
+			
+			idToNode.put(nodeID, node);
+		}
+		
+		return node;
+	}
+	
+	private static ArrayList<String> toLabelList(Object labels) {
+		if (labels instanceof Collection) {
+			ArrayList<String> labelList = new ArrayList<String>(((Collection<?>) labels).size());
+			
+			for (Object label : (Collection<?>) labels) {
+				labelList.add((String) label);
+			}
+			
+			return labelList;
+		} else {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Counts the readers pinned to each library version, so that a store knows the oldest version whose replaced 
+ * and deleted spaces must still be kept.
+ */
+class VersionPins {
+	private final TreeMap<Long, Integer> versionToPins = new TreeMap<Long, Integer>();
+	
+	synchronized void pin(long version) {
+		Integer numPins = versionToPins.get(version);
+		
+		if (numPins != null) {
+			versionToPins.put(version, numPins + 1);
+		} else {
+			versionToPins.put(version, 1);
+		}
+	}
+	
+	synchronized void unpin(long version) {
+		Integer numPins = versionToPins.get(version);
+		
+		if (numPins == null) {
+			throw new IllegalStateException("Library version " + version + " is not pinned");
+		} else if (numPins > 1) {
+			versionToPins.put(version, numPins - 1);
+		} else {
+			versionToPins.remove(version);
+		}
+	}
+	
+	/**
+	 * Returns the oldest pinned version, or currentVersion if no older version is pinned.
+	 */
+	synchronized long getOldestVersion(long currentVersion) {
+		Map.Entry<Long, Integer> oldest = versionToPins.firstEntry();
+		
+		if (oldest != null) {
+			return Math.min(oldest.getKey(), currentVersion);
+		} else {
+			return currentVersion;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.sbolstandard.core2.AccessType;
+import org.sbolstandard.core2.Component;
+import org.sbolstandard.core2.ComponentDefinition;
+import org.sbolstandard.core2.OrientationType;
+import org.sbolstandard.core2.SBOLDocument;
+import org.sbolstandard.core2.SBOLValidationException;
+import org.sbolstandard.core2.SequenceAnnotation;
+import org.sbolstandard.core2.SequenceOntology;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+
+import poolDesigner.spring.data.neo4j.PoolDesignerApplication;
+
+/**
+ * Designs the same pools from many threads at once against the in-memory store and checks that every result 
+ * equals the result of designing them serially, now that specification spaces are request-scoped rather than 
+ * written to and deleted from the shared store. The designs run against the default admission gate, which must 
+ * queue rather than reject a burst of this size.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringApplicationConfiguration(classes = PoolDesignerApplication.class)
+@WebAppConfiguration
+@TestPropertySource(properties = "spring.profiles.active=memory")
+public class DesignSpaceServiceConcurrencyTest {
+	
+	private static final int NUM_THREADS = 48;
+	
+	private static final int NUM_DESIGNS = 480;
+	
+	private static final List<String> POOL_SPECS = Arrays.asList(
+			"[promoter][RBS][CDS][terminator]",
+			"[pA][r1,r2][gfp][terminator]",
+			"[pB][RBS][rfp][t1]",
+			"[r^terminator][r^CDS][r^RBS][r^promoter]",
+			"[promoter][CDS]");
+	
+	@Autowired
+	DesignSpaceService designSpaceService;
+	
+	@Before
+	public void importLibrary() throws SBOLValidationException {
+		designSpaceService.deleteAll();
+		
+		designSpaceService.importSBOL(Collections.singleton(createLibrary()));
+	}
+	
+	@Test
+	public void concurrentDesignsMatchSerialDesigns() throws Exception {
+		List<String> serialPools = designSpaceService.designPools(POOL_SPECS);
+		
+		assertEquals(POOL_SPECS.size(), serialPools.size());
+		
+		assertFalse(serialPools.get(0).isEmpty());
+		
+		assertTrue(serialPools.get(4).isEmpty());
+		
+		long rejected = designSpaceService.designGate.getRejected();
+		
+		long timedOut = designSpaceService.designGate.getTimedOut();
+		
+		ExecutorService executor = Executors.newFixedThreadPool(NUM_THREADS);
+		
+		final CountDownLatch start = new CountDownLatch(1);
+		
+		try {
+			List<Future<List<String>>> results = new ArrayList<Future<List<String>>>(NUM_DESIGNS);
+			
+			for (int i = 0; i < NUM_DESIGNS; i++) {
+				results.add(executor.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws InterruptedException {
+						start.await();
+						
+						return designSpaceService.designPools(POOL_SPECS);
+					}
+				}));
+			}
+			
+			start.countDown();
+			
+			for (Future<List<String>> result : results) {
+				assertEquals(serialPools, result.get(1, TimeUnit.MINUTES));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		
+		assertEquals(rejected, designSpaceService.designGate.getRejected());
+		
+		assertEquals(timedOut, designSpaceService.designGate.getTimedOut());
+	}
+	
+	/**
+	 * Returns a library of every promoter-RBS-CDS-terminator construct over two promoters, two RBSs, two CDSs and 
+	 * one terminator, plus two constructs on the reverse complement strand.
+	 */
+	private static SBOLDocument createLibrary() throws SBOLValidationException {
+		SBOLDocument sbolDoc = new SBOLDocument();
+		
+		sbolDoc.setDefaultURIprefix("http://example.com/");
+		
+		ComponentDefinition[] promoters = {createPart(sbolDoc, "pA", SequenceOntology.PROMOTER), 
+				createPart(sbolDoc, "pB", SequenceOntology.PROMOTER)};
+		
+		ComponentDefinition[] rbss = {createPart(sbolDoc, "r1", SequenceOntology.RIBOSOME_ENTRY_SITE), 
+				createPart(sbolDoc, "r2", SequenceOntology.RIBOSOME_ENTRY_SITE)};
+		
+		ComponentDefinition[] cdss = {createPart(sbolDoc, "gfp", SequenceOntology.CDS), 
+				createPart(sbolDoc, "rfp", SequenceOntology.CDS)};
+		
+		ComponentDefinition terminator = createPart(sbolDoc, "t1", SequenceOntology.TERMINATOR);
+		
+		for (int i = 0; i < promoters.length; i++) {
+			for (int j = 0; j < rbss.length; j++) {
+				for (int k = 0; k < cdss.length; k++) {
+					createConstruct(sbolDoc, "c" + i + j + k, OrientationType.INLINE, 
+							promoters[i], rbss[j], cdss[k], terminator);
+				}
+			}
+		}
+		
+		for (int i = 0; i < promoters.length; i++) {
+			createConstruct(sbolDoc, "rc" + i, OrientationType.REVERSECOMPLEMENT, 
+					terminator, cdss[i], rbss[i], promoters[i]);
+		}
+		
+		return sbolDoc;
+	}
+	
+	private static ComponentDefinition createPart(SBOLDocument sbolDoc, String displayID, URI role) 
+			throws SBOLValidationException {
+		ComponentDefinition part = sbolDoc.createComponentDefinition(displayID, "1", ComponentDefinition.DNA);
+		
+		part.addRole(role);
+		
+		return part;
+	}
+	
+	private static void createConstruct(SBOLDocument sbolDoc, String displayID, OrientationType orientation, 
+			ComponentDefinition... parts) throws SBOLValidationException {
+		ComponentDefinition construct = sbolDoc.createComponentDefinition(displayID, "1", 
+				ComponentDefinition.DNA);
+		
+		for (int i = 0; i < parts.length; i++) {
+			Component subComp = construct.createComponent(displayID + "_c" + i, AccessType.PUBLIC, 
+					parts[i].getIdentity());
+			
+			SequenceAnnotation seqAnno = construct.createSequenceAnnotation(displayID + "_a" + i, "range", 
+					10*i + 1, 10*i + 10, orientation);
+			
+			seqAnno.setComponent(subComp.getIdentity());
+		}
+	}
+}
@@ -0,0 +1,187 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.services;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import poolDesigner.spring.data.neo4j.domain.DesignSpace;
+import poolDesigner.spring.data.neo4j.domain.Edge;
+import poolDesigner.spring.data.neo4j.domain.Node;
+
+/**
+ * Times the string, structured and compact forms of the same pools and compares their sizes. The pools are 
+ * chains of positions whose component IDs are SBOL URIs drawn from a small part library, so that, as in a real 
+ * library, the same URIs repeat across positions and pools. The results are printed for comparison between 
+ * runs; only the relative sizes are asserted, since timings depend on the machine.
+ */
+public class PoolWriterBenchmarkTest {
+	
+	private static final int NUM_POOLS = 50;
+	
+	private static final int NUM_POSITIONS = 4;
+	
+	private static final int NUM_PARTS = 40;
+	
+	private static final int PARTS_PER_POSITION = 10;
+	
+	private static final int NUM_WARMUPS = 200;
+	
+	private static final int NUM_ITERATIONS = 500;
+	
+	private static final JsonFactory JSON_FACTORY = new JsonFactory();
+	
+	@Test
+	public void compactFormIsSmallest() throws IOException {
+		List<DesignSpace> poolSpaces = createPoolSpaces();
+		
+		long stringSize = benchmark("string", poolSpaces, new PoolForm() {
+			@Override
+			public void write(List<DesignSpace> poolSpaces, ByteArrayOutputStream out) throws IOException {
+				writeStringPools(poolSpaces, out);
+			}
+		});
+		
+		long structuredSize = benchmark("structured", poolSpaces, new PoolForm() {
+			@Override
+			public void write(List<DesignSpace> poolSpaces, ByteArrayOutputStream out) throws IOException {
+				new PoolWriter(out, false).write(poolSpaces);
+			}
+		});
+		
+		long compactSize = benchmark("compact", poolSpaces, new PoolForm() {
+			@Override
+			public void write(List<DesignSpace> poolSpaces, ByteArrayOutputStream out) throws IOException {
+				new PoolWriter(out, true).write(poolSpaces);
+			}
+		});
+		
+		assertTrue(compactSize < stringSize);
+		
+		assertTrue(compactSize < structuredSize);
+	}
+	
+	/**
+	 * Writes the pools repeatedly in one form, first to warm up and then timed, prints the size of one response 
+	 * and the mean time and throughput of writing it, and returns the size.
+	 */
+	private static long benchmark(String formName, List<DesignSpace> poolSpaces, PoolForm form) 
+			throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		
+		for (int i = 0; i < NUM_WARMUPS; i++) {
+			out.reset();
+			
+			form.write(poolSpaces, out);
+		}
+		
+		long startTime = System.nanoTime();
+		
+		for (int i = 0; i < NUM_ITERATIONS; i++) {
+			out.reset();
+			
+			form.write(poolSpaces, out);
+		}
+		
+		double meanMillis = (System.nanoTime() - startTime)/1e6/NUM_ITERATIONS;
+		
+		System.out.printf("%-10s %9d bytes %8.3f ms/response %8.1f MB/s %8.0f responses/s%n", formName, 
+				out.size(), meanMillis, out.size()/1e3/meanMillis, 1e3/meanMillis);
+		
+		return out.size();
+	}
+	
+	/**
+	 * Writes the pools as the string form is sent by designPools: a JSON array with one string per pool, made of 
+	 * the component IDs of each position in brackets.
+	 */
+	private static void writeStringPools(List<DesignSpace> poolSpaces, ByteArrayOutputStream out) 
+			throws IOException {
+		JsonGenerator generator = JSON_FACTORY.createGenerator(out);
+		
+		generator.writeStartArray();
+		
+		for (DesignSpace poolSpace : poolSpaces) {
+			StringBuilder pool = new StringBuilder();
+			
+			for (Edge position : new PoolPositions(poolSpace)) {
+				pool.append(position.getComponentIDs());
+			}
+			
+			generator.writeString(pool.toString());
+		}
+		
+		generator.writeEndArray();
+		
+		generator.close();
+	}
+	
+	private static List<DesignSpace> createPoolSpaces() {
+		List<DesignSpace> poolSpaces = new ArrayList<DesignSpace>(NUM_POOLS);
+		
+		for (int i = 0; i < NUM_POOLS; i++) {
+			DesignSpace poolSpace = new DesignSpace("pool" + i);
+			
+			Node node = poolSpace.createStartNode();
+			
+			for (int j = 0; j < NUM_POSITIONS; j++) {
+				Node head = j < NUM_POSITIONS - 1 ? poolSpace.createNode() : poolSpace.createAcceptNode();
+				
+				ArrayList<String> compIDs = new ArrayList<String>(PARTS_PER_POSITION);
+				
+				ArrayList<String> compRoles = new ArrayList<String>(PARTS_PER_POSITION);
+				
+				for (int k = 0; k < PARTS_PER_POSITION; k++) {
+					compIDs.add("http://sbolstandard.org/example/part" + ((i + j*PARTS_PER_POSITION + k) % NUM_PARTS) 
+							+ "/1");
+					
+					compRoles.add("http://identifiers.org/so/SO:000016" + j);
+				}
+				
+				node.createEdge(head, compIDs, compRoles);
+				
+				node = head;
+			}
+			
+			poolSpaces.add(poolSpace);
+		}
+		
+		return poolSpaces;
+	}
+	
+	private interface PoolForm {
+		void write(List<DesignSpace> poolSpaces, ByteArrayOutputStream out) throws IOException;
+	}
+}
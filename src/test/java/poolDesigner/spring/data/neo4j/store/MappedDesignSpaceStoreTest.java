@@ -0,0 +1,218 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reopens a store left behind by a compaction that crashed before or after switching CURRENT to the new 
+ * generation, and checks that the store opens the generation CURRENT names with all of its spaces and 
+ * discards the other.
+ */
+public class MappedDesignSpaceStoreTest {
+	
+	private File root;
+	
+	private MappedDesignSpaceStore store;
+	
+	@Before
+	public void createStore() throws IOException {
+		root = Files.createTempDirectory("mappedStore").toFile();
+		
+		store = openStore();
+		
+		store.createDesignSpace("c1", createLabels("pA", "r1", "gfp", "t1"), 
+				createLabels("promoter", "ribosome_entry_site", "CDS", "terminator"));
+		
+		store.createDesignSpace("c2", createLabels("pB", "r2", "rfp", "t1"), 
+				createLabels("promoter", "ribosome_entry_site", "CDS", "terminator"));
+		
+		store.deleteDesignSpace("c2");
+		
+		store.createDesignSpace("c3", createLabels("pA", "r2", "rfp"), 
+				createLabels("promoter", "ribosome_entry_site", "CDS"));
+	}
+	
+	@After
+	public void deleteStore() {
+		store.close();
+		
+		deleteDirectory(root);
+	}
+	
+	@Test
+	public void keepsPreviousGenerationAfterCrashBeforeSwitch() throws IOException {
+		store.close();
+		
+		File nextGeneration = getGenerationDirectory(1);
+		
+		copyHalfOfSegment(getGenerationDirectory(0), nextGeneration);
+		
+		writeFile(new File(root, "CURRENT.tmp"), "1");
+		
+		store = openStore();
+		
+		assertLibrary();
+		
+		assertFalse(nextGeneration.exists());
+		
+		assertFalse(new File(root, "CURRENT.tmp").exists());
+		
+		store.compact();
+		
+		store.close();
+		
+		store = openStore();
+		
+		assertLibrary();
+		
+		assertTrue(getGenerationDirectory(1).isDirectory());
+		
+		assertFalse(getGenerationDirectory(0).exists());
+	}
+	
+	@Test
+	public void switchesToNextGenerationAfterCrashBeforeCleanUp() throws IOException {
+		store.compact();
+		
+		store.close();
+		
+		File previousGeneration = getGenerationDirectory(0);
+		
+		copyHalfOfSegment(getGenerationDirectory(1), previousGeneration);
+		
+		store = openStore();
+		
+		assertLibrary();
+		
+		assertFalse(previousGeneration.exists());
+	}
+	
+	@Test
+	public void compactsToNextGeneration() throws IOException {
+		store.compact();
+		
+		assertLibrary();
+		
+		store.close();
+		
+		assertEquals("1", new String(Files.readAllBytes(new File(root, "CURRENT").toPath()), 
+				StandardCharsets.UTF_8).trim());
+		
+		store = openStore();
+		
+		assertLibrary();
+	}
+	
+	private void assertLibrary() {
+		assertEquals(new HashSet<String>(Arrays.asList("c1", "c3")), store.getDesignSpaceIDs());
+		
+		assertEquals(new HashSet<String>(Arrays.asList("pA", "r1", "gfp", "t1")), store.getComponentIDs("c1"));
+		
+		assertEquals(new HashSet<String>(Arrays.asList("pA", "r2", "rfp")), store.getComponentIDs("c3"));
+	}
+	
+	private MappedDesignSpaceStore openStore() throws IOException {
+		MappedDesignSpaceStore store = new MappedDesignSpaceStore();
+		
+		store.directory = root.getPath();
+		
+		store.segmentSize = 4096;
+		
+		store.open();
+		
+		return store;
+	}
+	
+	private File getGenerationDirectory(int generation) {
+		return new File(root, String.format("gen-%06d", generation));
+	}
+	
+	/**
+	 * Leaves a generation directory as a compaction that crashed while copying would, with only part of the 
+	 * first segment written.
+	 */
+	private static void copyHalfOfSegment(File sourceGeneration, File targetGeneration) throws IOException {
+		byte[] segment = Files.readAllBytes(new File(sourceGeneration, "segment-000000.log").toPath());
+		
+		targetGeneration.mkdirs();
+		
+		FileOutputStream out = new FileOutputStream(new File(targetGeneration, "segment-000000.log"));
+		
+		try {
+			out.write(segment, 0, segment.length/2);
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static void writeFile(File file, String content) throws IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		
+		try {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		} finally {
+			out.close();
+		}
+	}
+	
+	private static ArrayList<ArrayList<String>> createLabels(String... labels) {
+		ArrayList<ArrayList<String>> allLabels = new ArrayList<ArrayList<String>>(labels.length);
+		
+		for (String label : labels) {
+			allLabels.add(new ArrayList<String>(Arrays.asList(label)));
+		}
+		
+		return allLabels;
+	}
+	
+	private static void deleteDirectory(File dir) {
+		File[] files = dir.listFiles();
+		
+		if (files != null) {
+			for (File file : files) {
+				deleteDirectory(file);
+			}
+		}
+		
+		dir.delete();
+	}
+}
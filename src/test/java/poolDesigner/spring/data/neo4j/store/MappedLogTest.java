@@ -0,0 +1,219 @@
+/*Copyright (c) 2015, Nicholas Roehner
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without modification, are permitted provided 
+that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this list of conditions and 
+the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions 
+and the following disclaimer in the documentation and/or other materials provided with the distribution.
+
+3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse 
+or promote products derived from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED 
+WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A 
+PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR 
+ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED 
+TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) 
+HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING 
+NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF 
+THE POSSIBILITY OF SUCH DAMAGE.
+*/
+
+package poolDesigner.spring.data.neo4j.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Reopens logs whose tail was cut off or overwritten, as after a crash in the middle of an append, and checks 
+ * that only intact records are replayed and that appending resumes after them.
+ */
+public class MappedLogTest {
+	
+	private static final int SEGMENT_SIZE = 256;
+	
+	private static final int HEADER_SIZE = 8;
+	
+	private static final int PAYLOAD_SIZE = 24;
+	
+	private static final int RECORD_SIZE = HEADER_SIZE + PAYLOAD_SIZE;
+	
+	private File directory;
+	
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("mappedLog").toFile();
+	}
+	
+	@After
+	public void deleteDirectory() {
+		for (File file : directory.listFiles()) {
+			file.delete();
+		}
+		
+		directory.delete();
+	}
+	
+	@Test
+	public void replaysAllRecords() throws IOException {
+		appendRecords(0, 12);
+		
+		assertRecords(readRecords(), 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11);
+	}
+	
+	@Test
+	public void discardsTruncatedTail() throws IOException {
+		appendRecords(0, 3);
+		
+		truncate(getSegmentFile(0), 2*RECORD_SIZE + HEADER_SIZE + PAYLOAD_SIZE/2);
+		
+		assertRecords(readRecords(), 0, 1);
+		
+		appendRecords(3, 1);
+		
+		assertRecords(readRecords(), 0, 1, 3);
+	}
+	
+	@Test
+	public void discardsTruncatedHeader() throws IOException {
+		appendRecords(0, 3);
+		
+		truncate(getSegmentFile(0), 2*RECORD_SIZE + HEADER_SIZE/2);
+		
+		assertRecords(readRecords(), 0, 1);
+		
+		appendRecords(3, 1);
+		
+		assertRecords(readRecords(), 0, 1, 3);
+	}
+	
+	@Test
+	public void discardsCorruptTail() throws IOException {
+		appendRecords(0, 3);
+		
+		corrupt(getSegmentFile(0), 2*RECORD_SIZE + HEADER_SIZE + 1);
+		
+		assertRecords(readRecords(), 0, 1);
+		
+		appendRecords(3, 1);
+		
+		assertRecords(readRecords(), 0, 1, 3);
+	}
+	
+	@Test
+	public void discardsSegmentsAfterCorruptRecord() throws IOException {
+		appendRecords(0, 12);
+		
+		corrupt(getSegmentFile(0), 5*RECORD_SIZE + HEADER_SIZE + 1);
+		
+		assertRecords(readRecords(), 0, 1, 2, 3, 4);
+		
+		assertFalse(getSegmentFile(1).exists());
+		
+		appendRecords(12, 4);
+		
+		assertRecords(readRecords(), 0, 1, 2, 3, 4, 12, 13, 14, 15);
+	}
+	
+	private void appendRecords(int firstRecord, int numRecords) throws IOException {
+		MappedLog log = new MappedLog(directory, SEGMENT_SIZE);
+		
+		log.open(new MappedLog.RecordVisitor() {
+			@Override
+			public void visit(long address, ByteBuffer payload) {
+				
+			}
+		});
+		
+		for (int i = firstRecord; i < firstRecord + numRecords; i++) {
+			log.append(createPayload(i));
+		}
+		
+		log.close();
+	}
+	
+	private List<byte[]> readRecords() throws IOException {
+		final List<byte[]> records = new ArrayList<byte[]>();
+		
+		MappedLog log = new MappedLog(directory, SEGMENT_SIZE);
+		
+		log.open(new MappedLog.RecordVisitor() {
+			@Override
+			public void visit(long address, ByteBuffer payload) {
+				byte[] record = new byte[payload.remaining()];
+				
+				payload.duplicate().get(record);
+				
+				records.add(record);
+			}
+		});
+		
+		log.close();
+		
+		return records;
+	}
+	
+	private static void assertRecords(List<byte[]> records, int... expectedRecords) {
+		assertEquals(expectedRecords.length, records.size());
+		
+		for (int i = 0; i < expectedRecords.length; i++) {
+			assertArrayEquals(createPayload(expectedRecords[i]), records.get(i));
+		}
+	}
+	
+	private static byte[] createPayload(int record) {
+		byte[] payload = new byte[PAYLOAD_SIZE];
+		
+		Arrays.fill(payload, (byte) (record + 1));
+		
+		return payload;
+	}
+	
+	private File getSegmentFile(int segmentIndex) {
+		return new File(directory, String.format("segment-%06d.log", segmentIndex));
+	}
+	
+	private static void truncate(File file, long length) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		
+		try {
+			raf.setLength(length);
+		} finally {
+			raf.close();
+		}
+	}
+	
+	private static void corrupt(File file, long position) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		
+		try {
+			raf.seek(position);
+			
+			int value = raf.read();
+			
+			raf.seek(position);
+			
+			raf.write(~value);
+		} finally {
+			raf.close();
+		}
+	}
+}